@@ -0,0 +1,106 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.io.Writer;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.apache.log4j.varia.NullAppender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.NOPLogger;
+
+import rx.Subscriber;
+
+/**
+ * SLF4J backends used by the benchmarks.
+ */
+final class BenchmarkLoggers {
+
+    /**
+     * SLF4J no-operation logger (every level is disabled).
+     */
+    static final String NOP = "nop";
+
+    /**
+     * log4j logger with the benchmarked levels disabled.
+     */
+    static final String DISABLED = "disabled";
+
+    /**
+     * log4j logger with levels enabled and an appender that discards events.
+     */
+    static final String NULL_APPENDER = "nullAppender";
+
+    /**
+     * log4j logger with levels enabled and an appender that formats events
+     * with a {@link PatternLayout} and writes them to a discarding writer.
+     */
+    static final String PATTERN_LAYOUT = "patternLayout";
+
+    private BenchmarkLoggers() {
+        // prevent instantiation
+    }
+
+    static Logger logger(String backend, String name) {
+        if (NOP.equals(backend)) {
+            return NOPLogger.NOP_LOGGER;
+        }
+        org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(name);
+        log.removeAllAppenders();
+        log.setAdditivity(false);
+        if (DISABLED.equals(backend)) {
+            log.setLevel(Level.WARN);
+            log.addAppender(new NullAppender());
+        } else if (NULL_APPENDER.equals(backend)) {
+            log.setLevel(Level.INFO);
+            log.addAppender(new NullAppender());
+        } else if (PATTERN_LAYOUT.equals(backend)) {
+            log.setLevel(Level.INFO);
+            log.addAppender(new WriterAppender(
+                    new PatternLayout("%d{yyyy-MM-dd HH:mm:ss.SSS} [%t] %-5p %c - %m%n"),
+                    new DiscardingWriter()));
+        } else {
+            throw new IllegalArgumentException("unknown backend: " + backend);
+        }
+        return LoggerFactory.getLogger(name);
+    }
+
+    static <T> Subscriber<T> child() {
+        return new Subscriber<T>() {
+
+            @Override
+            public void onCompleted() {
+                // do nothing
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                // do nothing
+            }
+
+            @Override
+            public void onNext(T t) {
+                // do nothing
+            }
+        };
+    }
+
+    private static final class DiscardingWriter extends Writer {
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            // discard
+        }
+
+        @Override
+        public void flush() {
+            // do nothing
+        }
+
+        @Override
+        public void close() {
+            // do nothing
+        }
+    }
+}
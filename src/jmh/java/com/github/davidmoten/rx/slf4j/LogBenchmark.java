@@ -0,0 +1,72 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rx.functions.Action1;
+
+/**
+ * Measures the per-item cost of the {@link Log} actions as used in
+ * <tt>doOnNext</tt> against each log4j backend. Each operation is one call of
+ * the action. There is no NOP backend because {@link Log} always logs to the
+ * logger named after {@link Logging} of the bound SLF4J backend (log4j here).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBenchmark {
+
+    @Param({ BenchmarkLoggers.DISABLED, BenchmarkLoggers.NULL_APPENDER,
+            BenchmarkLoggers.PATTERN_LAYOUT })
+    public String backend;
+
+    private Action1<Integer> count;
+    private Action1<Integer> rate;
+    private Action1<Integer> everyCount;
+    private Action1<Integer> everyTime;
+    private int n;
+
+    @Setup
+    public void setup() {
+        // Log always logs to the Logging class logger
+        BenchmarkLoggers.logger(backend, Logging.class.getName());
+        count = Log.<Integer> count("count=").every(1000).log();
+        rate = Log.<Integer> rate("rate=", 100, TimeUnit.SECONDS).every(1000).log();
+        everyCount = Log.<Integer> every(1000).count("count=").log();
+        everyTime = Log.<Integer> every(100, TimeUnit.MILLISECONDS).count("count=").log();
+    }
+
+    @Benchmark
+    public void count() {
+        count.call(n++);
+    }
+
+    @Benchmark
+    public void rate() {
+        rate.call(n++);
+    }
+
+    @Benchmark
+    public void everyCount() {
+        everyCount.call(n++);
+    }
+
+    @Benchmark
+    public void everyTime() {
+        everyTime.call(n++);
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Parameters.Builder;
+
+import rx.Observable;
+
+/**
+ * Measures the per-item cost of <tt>lift(Logging.logger()...log())</tt> for
+ * each builder feature against each SLF4J backend. Operations are items so
+ * ops/s is items per second and <tt>gc.alloc.rate.norm</tt> is bytes
+ * allocated per item. The <tt>noLogging</tt> benchmark is the cost of the
+ * stream without the logging operator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(OperatorLoggingBenchmark.ITEMS)
+public class OperatorLoggingBenchmark {
+
+    static final int ITEMS = 1000;
+
+    @Param({ BenchmarkLoggers.NOP, BenchmarkLoggers.DISABLED, BenchmarkLoggers.NULL_APPENDER,
+            BenchmarkLoggers.PATTERN_LAYOUT })
+    public String backend;
+
+    private Observable<Integer> source;
+    private Observable<Integer> showValue;
+    private Observable<Integer> showCount;
+    private Observable<Integer> every;
+    private Observable<Integer> showRateSince;
+    private Observable<Integer> showMemory;
+    private Observable<Integer> when;
+    private Observable<Integer> startFinish;
+
+    @Setup
+    public void setup() {
+        Logger logger = BenchmarkLoggers.logger(backend,
+                OperatorLoggingBenchmark.class.getName());
+        source = Observable.range(1, ITEMS);
+        showValue = source.lift(builder(logger).showValue().log());
+        showCount = source.lift(builder(logger).showCount().log());
+        every = source.lift(builder(logger).showCount().every(100).log());
+        showRateSince = source.lift(builder(logger).showRateSince("rate", 1000).log());
+        showMemory = source.lift(builder(logger).showMemory().log());
+        when = source.lift(builder(logger).showValue().when(n -> n % 10 == 0).log());
+        startFinish = source
+                .lift(builder(logger).showValue().start(ITEMS / 4).finish(ITEMS / 2).log());
+    }
+
+    private static Builder<Integer> builder(Logger logger) {
+        return Logging.<Integer> logger(logger);
+    }
+
+    @Benchmark
+    public void noLogging() {
+        source.subscribe();
+    }
+
+    @Benchmark
+    public void showValue() {
+        showValue.subscribe();
+    }
+
+    @Benchmark
+    public void showCount() {
+        showCount.subscribe();
+    }
+
+    @Benchmark
+    public void every() {
+        every.subscribe();
+    }
+
+    @Benchmark
+    public void showRateSince() {
+        showRateSince.subscribe();
+    }
+
+    @Benchmark
+    public void showMemory() {
+        showMemory.subscribe();
+    }
+
+    @Benchmark
+    public void when() {
+        when.subscribe();
+    }
+
+    @Benchmark
+    public void startFinish() {
+        startFinish.subscribe();
+    }
+}
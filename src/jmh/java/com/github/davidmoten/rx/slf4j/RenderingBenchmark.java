@@ -0,0 +1,65 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import rx.Subscriber;
+
+/**
+ * Measures the cost (run with <tt>-prof gc</tt> to see
+ * <tt>gc.alloc.rate.norm</tt>) of rendering one logged <i>onNext</i> event.
+ * Each operation pushes one item through the parent subscriber created by
+ * {@link OperatorLogging} to a log4j logger with an appender that discards
+ * events.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingBenchmark {
+
+    private Subscriber<? super Integer> value;
+    private Subscriber<? super Integer> valueCountRate;
+    private Subscriber<? super Integer> formatCount;
+    private int n;
+
+    @Setup
+    public void setup() {
+        Logger logger = BenchmarkLoggers.logger(BenchmarkLoggers.NULL_APPENDER,
+                RenderingBenchmark.class.getName());
+        value = Logging.<Integer> logger(logger).showValue().log()
+                .call(BenchmarkLoggers.<Integer> child());
+        valueCountRate = Logging.<Integer> logger(logger).showValue().showCount()
+                .showRateSince("rate", 1000).log().call(BenchmarkLoggers.<Integer> child());
+        formatCount = Logging.<Integer> logger(logger).onNextFormat("n=%s").showCount().log()
+                .call(BenchmarkLoggers.<Integer> child());
+    }
+
+    @Benchmark
+    public void showValue() {
+        value.onNext(n++);
+    }
+
+    @Benchmark
+    public void showValueCountRate() {
+        valueCountRate.onNext(n++);
+    }
+
+    @Benchmark
+    public void formatCount() {
+        formatCount.onNext(n++);
+    }
+}
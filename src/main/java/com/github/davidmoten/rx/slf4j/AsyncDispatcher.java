@@ -0,0 +1,141 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+import com.github.davidmoten.rx.slf4j.Logging.Overflow;
+
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.exceptions.Exceptions;
+import rx.functions.Action0;
+import rx.plugins.RxJavaHooks;
+
+/**
+ * Queues rendered log lines in a {@link BoundedQueue} and logs them in batches
+ * on a {@link Worker} of the given {@link Scheduler} so that the emitting
+ * thread does not wait on appender I/O. Once closed and drained the worker is
+ * released and any late lines (for example from timers that are still
+ * running) are logged on the calling thread. A line that the backend fails to
+ * log is reported to {@link RxJavaHooks#onError(Throwable)} and draining
+ * continues.
+ */
+final class AsyncDispatcher implements Dispatcher {
+
+    private static final long BLOCK_PARK_NANOS = 1000;
+
+    private final Logger logger;
+    private final BoundedQueue<Line> queue;
+    private final Overflow overflow;
+    private final Worker worker;
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Action0 drain = this::drain;
+    private volatile boolean closed;
+    // set by the drain loop while it owns wip, read by the next owner
+    private volatile boolean shutdown;
+
+    AsyncDispatcher(Logger logger, int bufferSize, Scheduler scheduler, Overflow overflow) {
+        this.logger = logger;
+        this.queue = new BoundedQueue<Line>(bufferSize);
+        this.overflow = overflow;
+        this.worker = scheduler.createWorker();
+    }
+
+    @Override
+    public void dispatch(Logger logger, String message, Level level, Throwable error,
+            KeyValues fields) {
+        // the fields are reused by the emitting thread so take a copy
+        Line line = new Line(logger, message, level, error,
+                fields == null || fields.isEmpty() ? null : fields.copy());
+        if (!queue.offer(line)) {
+            if (overflow == Overflow.DROP_NEWEST) {
+                dropped.incrementAndGet();
+            } else if (overflow == Overflow.DROP_OLDEST) {
+                do {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                } while (!queue.offer(line));
+            } else {
+                while (!queue.offer(line)) {
+                    schedule();
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+            }
+        }
+        schedule();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        schedule();
+    }
+
+    private void schedule() {
+        if (wip.getAndIncrement() == 0) {
+            if (shutdown)
+                // the worker has been released
+                drain();
+            else
+                worker.schedule(drain);
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        while (true) {
+            Line line;
+            while ((line = queue.poll()) != null) {
+                log(line.logger, line.message, line.level, line.error, line.fields);
+            }
+            long n = dropped.getAndSet(0);
+            if (n > 0) {
+                log(logger, n + " log messages dropped because the buffer was full", Level.WARN,
+                        null, null);
+            }
+            if (closed && !shutdown) {
+                // release the worker while still owning wip so that whoever
+                // schedules next sees shutdown and drains on its own thread
+                shutdown = true;
+                worker.unsubscribe();
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    private static void log(Logger logger, String message, Level level, Throwable error,
+            KeyValues fields) {
+        try {
+            Logging.log(logger, message, level, error, fields);
+        } catch (Throwable e) {
+            Exceptions.throwIfFatal(e);
+            // an appender failed, don't leave the drain loop owning wip
+            RxJavaHooks.onError(e);
+        }
+    }
+
+    private static final class Line {
+        final Logger logger;
+        final String message;
+        final Level level;
+        final Throwable error;
+        final KeyValues fields;
+
+        Line(Logger logger, String message, Level level, Throwable error, KeyValues fields) {
+            this.logger = logger;
+            this.message = message;
+            this.level = level;
+            this.error = error;
+            this.fields = fields;
+        }
+    }
+}
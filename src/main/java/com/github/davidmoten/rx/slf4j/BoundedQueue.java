@@ -0,0 +1,92 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free bounded multi-producer multi-consumer queue (after Dmitry Vyukov's
+ * bounded MPMC queue). Each slot has a sequence number that tells producers
+ * and consumers whether the slot is ready for them, so <tt>offer</tt> and
+ * <tt>poll</tt> only contend on a single CAS of the tail or head index.
+ *
+ * @param <T>
+ *            type of queued items
+ */
+final class BoundedQueue<T> {
+
+    private final AtomicReferenceArray<T> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            requested capacity which is rounded up to a power of two
+     *            (minimum 2)
+     */
+    BoundedQueue(int capacity) {
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<T>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an item to the queue if there is space.
+     *
+     * @param item
+     *            non-null item
+     * @return false if the queue is full
+     */
+    boolean offer(T item) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(index, item);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+            pos = tail.get();
+        }
+    }
+
+    /**
+     * Removes the item at the head of the queue.
+     *
+     * @return the item or null if the queue is empty
+     */
+    T poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    T item = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequences.set(index, pos + mask + 1);
+                    return item;
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+            pos = head.get();
+        }
+    }
+}
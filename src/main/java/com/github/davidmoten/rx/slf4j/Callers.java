@@ -0,0 +1,90 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.lang.reflect.Method;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Finds the name of the class that called into {@link Logging} so that a
+ * {@link org.slf4j.Logger} can be based on it.
+ *
+ * <p>
+ * On Java 9+ <tt>java.lang.StackWalker</tt> is used (via reflection because
+ * this library targets Java 8) which only materializes the frames up to the
+ * caller. Otherwise the full stack trace of a {@link Throwable} is inspected.
+ */
+final class Callers {
+
+    private static final String LOGGING_CLASS_NAME = Logging.class.getName();
+    private static final String CALLERS_CLASS_NAME = Callers.class.getName();
+
+    // null if StackWalker is not available
+    private static final Object WALKER;
+    private static final Method WALK;
+    private static final Method GET_CLASS_NAME;
+
+    static {
+        Object walker;
+        Method walk;
+        Method getClassName;
+        try {
+            Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            walker = walkerClass.getMethod("getInstance").invoke(null);
+            walk = walkerClass.getMethod("walk", Function.class);
+            getClassName = Class.forName("java.lang.StackWalker$StackFrame")
+                    .getMethod("getClassName");
+        } catch (ReflectiveOperationException e) {
+            // running on Java 8
+            walker = null;
+            walk = null;
+            getClassName = null;
+        }
+        WALKER = walker;
+        WALK = walk;
+        GET_CLASS_NAME = getClassName;
+    }
+
+    private static final Function<Stream<?>, String> FIND_CALLER = frames -> frames
+            .map(Callers::className) //
+            .filter(name -> !isInternal(name)) //
+            .findFirst() //
+            .orElse(LOGGING_CLASS_NAME);
+
+    private Callers() {
+        // prevent instantiation
+    }
+
+    static String callingClassName() {
+        if (WALKER != null) {
+            try {
+                return (String) WALK.invoke(WALKER, FIND_CALLER);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return callingClassNameFromStackTrace();
+            }
+        } else {
+            return callingClassNameFromStackTrace();
+        }
+    }
+
+    private static String callingClassNameFromStackTrace() {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            if (!isInternal(element.getClassName())) {
+                return element.getClassName();
+            }
+        }
+        return LOGGING_CLASS_NAME;
+    }
+
+    private static String className(Object frame) {
+        try {
+            return (String) GET_CLASS_NAME.invoke(frame);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isInternal(String className) {
+        return className.equals(LOGGING_CLASS_NAME) || className.equals(CALLERS_CLASS_NAME)
+                || className.startsWith(LOGGING_CLASS_NAME + "$");
+    }
+}
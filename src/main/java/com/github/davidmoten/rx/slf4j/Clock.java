@@ -0,0 +1,67 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Scheduler;
+
+/**
+ * Source of the time used by the time based logging steps (for example
+ * {@link Logging.Parameters.Builder#every(long, TimeUnit)} and
+ * {@link Logging.Parameters.Builder#showRateSince(String, long)}). Only
+ * differences between readings are used so the time need not be related to
+ * the wall clock.
+ */
+public interface Clock {
+
+    /**
+     * Returns the current time in milliseconds.
+     *
+     * @return time in ms
+     */
+    long now();
+
+    /**
+     * Returns a clock that reads {@link System#currentTimeMillis()}. This is
+     * the default.
+     *
+     * @return wall clock
+     */
+    static Clock system() {
+        return Clocks.SYSTEM;
+    }
+
+    /**
+     * Returns a clock based on {@link System#nanoTime()} that is not affected
+     * by adjustments of the wall clock.
+     *
+     * @return monotonic clock
+     */
+    static Clock monotonic() {
+        return Clocks.MONOTONIC;
+    }
+
+    /**
+     * Returns a monotonic clock that is updated every
+     * {@value Clocks#COARSE_TICK_MS}ms by a shared background daemon thread
+     * so that reading it costs a single volatile read. Suitable for high
+     * volume streams where millisecond accuracy is not needed.
+     *
+     * @return coarse clock
+     */
+    static Clock coarse() {
+        return Clocks.Coarse.INSTANCE;
+    }
+
+    /**
+     * Returns a clock that reads {@link Scheduler#now()}. Using a
+     * {@link rx.schedulers.TestScheduler} makes time based logging
+     * deterministic in tests.
+     *
+     * @param scheduler
+     *            scheduler to read the time from
+     * @return scheduler clock
+     */
+    static Clock scheduler(Scheduler scheduler) {
+        return scheduler::now;
+    }
+}
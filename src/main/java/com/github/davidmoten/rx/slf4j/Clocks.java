@@ -0,0 +1,52 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Clock} implementations.
+ */
+final class Clocks {
+
+    static final long COARSE_TICK_MS = 10;
+
+    static final Clock SYSTEM = System::currentTimeMillis;
+
+    static final Clock MONOTONIC = () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+
+    private Clocks() {
+        // prevent instantiation
+    }
+
+    static final class Coarse implements Clock, Runnable {
+
+        // the thread is only started when the coarse clock is first used
+        static final Coarse INSTANCE = start();
+
+        private volatile long now = MONOTONIC.now();
+
+        private static Coarse start() {
+            Coarse clock = new Coarse();
+            Thread thread = new Thread(clock, "rxjava-slf4j-coarse-clock");
+            thread.setDaemon(true);
+            thread.start();
+            return clock;
+        }
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(COARSE_TICK_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                now = MONOTONIC.now();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.davidmoten.rx.slf4j;
+
+/**
+ * A {@link String#format(String, Object...)} pattern with at most one argument
+ * that has been compiled into literal segments so that it can be appended to a
+ * {@link StringBuilder} without parsing the pattern or creating intermediate
+ * strings for every event. Only the <tt>%s</tt>, <tt>%%</tt> and <tt>%n</tt>
+ * directives are compiled, any other pattern falls back to
+ * {@link String#format(String, Object...)}.
+ */
+final class CompiledFormat {
+
+    private final String format;
+    // null if this format falls back to String.format
+    private final String prefix;
+    private final String suffix;
+    private final boolean hasArgument;
+
+    private CompiledFormat(String format, String prefix, String suffix, boolean hasArgument) {
+        this.format = format;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.hasArgument = hasArgument;
+    }
+
+    static CompiledFormat compile(String format) {
+        StringBuilder prefix = new StringBuilder();
+        StringBuilder suffix = new StringBuilder();
+        StringBuilder current = prefix;
+        boolean hasArgument = false;
+        for (int i = 0; i < format.length(); i++) {
+            char ch = format.charAt(i);
+            if (ch != '%') {
+                current.append(ch);
+            } else if (i == format.length() - 1) {
+                return fallback(format);
+            } else {
+                char next = format.charAt(++i);
+                if (next == '%') {
+                    current.append('%');
+                } else if (next == 'n') {
+                    current.append(System.lineSeparator());
+                } else if (next == 's' && !hasArgument) {
+                    hasArgument = true;
+                    current = suffix;
+                } else {
+                    return fallback(format);
+                }
+            }
+        }
+        return new CompiledFormat(format, prefix.toString(), suffix.toString(), hasArgument);
+    }
+
+    private static CompiledFormat fallback(String format) {
+        return new CompiledFormat(format, null, null, true);
+    }
+
+    void appendTo(StringBuilder b, Object argument) {
+        if (prefix == null) {
+            b.append(String.format(format, String.valueOf(argument)));
+        } else {
+            b.append(prefix);
+            if (hasArgument) {
+                appendValue(b, argument);
+            }
+            b.append(suffix);
+        }
+    }
+
+    /**
+     * As {@link #appendTo(StringBuilder, Object)} but renders the argument
+     * with the given renderer within the length limit.
+     */
+    void appendTo(StringBuilder b, Object argument, ValueRenderer renderer, int maxLength) {
+        if (prefix == null) {
+            StringBuilder value = new StringBuilder();
+            renderer.appendTo(value, argument, maxLength);
+            b.append(String.format(format, value));
+        } else {
+            b.append(prefix);
+            if (hasArgument) {
+                renderer.appendTo(b, argument, maxLength);
+            }
+            b.append(suffix);
+        }
+    }
+
+    static void appendValue(StringBuilder b, Object value) {
+        // avoid creating a String for the common boxed numeric types
+        if (value instanceof Integer) {
+            b.append(((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            b.append(((Long) value).longValue());
+        } else {
+            b.append(value);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count of <i>onNext</i> notifications that can be shared between logging
+ * operators (for example to count the items of all the inner streams of a
+ * <tt>flatMap</tt>) via
+ * {@link Logging.Parameters.Builder#showCount(String, Counter)},
+ * {@link Logging.Parameters.Builder#every(int, Counter)},
+ * {@link Logging.Parameters.Builder#showRateSince(String, long, Counter)} and
+ * {@link Logging.Parameters.Builder#showRateSinceStart(String, Counter)}.
+ *
+ * <p>
+ * A counter created by {@link #create()} is striped (in the manner of
+ * {@link java.util.concurrent.atomic.LongAdder}): each thread increments a
+ * cell on its own cache line so that concurrent emitters do not contend on a
+ * single value. Reading the total sums the cells. Decisions like "log every N
+ * items" are made on the cell of the incrementing thread so they stay cheap
+ * but are approximate (one in every N items per thread) when there is more
+ * than one emitting thread.
+ */
+public abstract class Counter {
+
+    Counter() {
+        // only subclassed in this package
+    }
+
+    /**
+     * Returns a new striped counter that is safe to share between threads.
+     *
+     * @return new counter
+     */
+    public static Counter create() {
+        return new StripedCounter();
+    }
+
+    /**
+     * Returns a counter that views and updates the given {@link AtomicLong}.
+     *
+     * @param count
+     *            the value to update
+     * @return counter
+     */
+    static Counter of(AtomicLong count) {
+        return new AtomicCounter(count);
+    }
+
+    /**
+     * Returns a counter for use by a single subscription (which is serialized
+     * by the Observable contract) so needs no synchronization at all.
+     *
+     * @return counter
+     */
+    static Counter unshared() {
+        return new UnsharedCounter();
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public final void increment() {
+        incrementAndSample();
+    }
+
+    /**
+     * Returns the current total count.
+     *
+     * @return count
+     */
+    public abstract long get();
+
+    /**
+     * Adds one to the count and returns a value that increases by one with
+     * every increment made by the current thread (the total count if the
+     * counter is not striped).
+     *
+     * @return sampled count
+     */
+    abstract long incrementAndSample();
+
+    private static final class UnsharedCounter extends Counter {
+
+        private long count;
+
+        @Override
+        public long get() {
+            return count;
+        }
+
+        @Override
+        long incrementAndSample() {
+            return ++count;
+        }
+    }
+
+    private static final class AtomicCounter extends Counter {
+
+        private final AtomicLong count;
+
+        AtomicCounter(AtomicLong count) {
+            this.count = count;
+        }
+
+        @Override
+        public long get() {
+            return count.get();
+        }
+
+        @Override
+        long incrementAndSample() {
+            return count.incrementAndGet();
+        }
+    }
+
+    private static final class StripedCounter extends Counter {
+
+        // 16 longs = 128 bytes so that cells are on different cache lines even
+        // with adjacent line prefetch
+        private static final int PADDING_SHIFT = 4;
+        private static final int STRIPES = stripes();
+
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES << PADDING_SHIFT);
+
+        @Override
+        public long get() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += cells.get(i << PADDING_SHIFT);
+            }
+            return sum;
+        }
+
+        @Override
+        long incrementAndSample() {
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            return cells.incrementAndGet(stripe << PADDING_SHIFT);
+        }
+
+        private static int stripes() {
+            int n = Runtime.getRuntime().availableProcessors();
+            int stripes = 1;
+            while (stripes < n) {
+                stripes <<= 1;
+            }
+            return stripes;
+        }
+    }
+}
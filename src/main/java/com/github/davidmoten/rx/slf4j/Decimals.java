@@ -0,0 +1,42 @@
+package com.github.davidmoten.rx.slf4j;
+
+/**
+ * Appends decimal numbers to a {@link StringBuilder} with a fixed number of
+ * decimal places without the allocations (and lack of thread-safety) of
+ * {@link java.text.DecimalFormat}.
+ */
+final class Decimals {
+
+    // above this scaled values may overflow a long
+    private static final double MAX_FIXED = 1e15;
+
+    private Decimals() {
+        // prevent instantiation
+    }
+
+    static void append(StringBuilder b, double value, int decimalPlaces) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= MAX_FIXED) {
+            b.append(value);
+            return;
+        }
+        double v = value;
+        if (v < 0) {
+            b.append('-');
+            v = -v;
+        }
+        long factor = 1;
+        for (int i = 0; i < decimalPlaces; i++) {
+            factor *= 10;
+        }
+        long scaled = Math.round(v * factor);
+        b.append(scaled / factor);
+        if (decimalPlaces > 0) {
+            b.append('.');
+            long fraction = scaled % factor;
+            for (long f = factor / 10; f > 1 && fraction < f; f /= 10) {
+                b.append('0');
+            }
+            b.append(fraction);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static com.github.davidmoten.rx.slf4j.LatencyReport.appendDuration;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.functions.Action0;
+
+/**
+ * Collapses identical lines logged by all the subscriptions to one operator
+ * (requested by {@link Logging.Parameters.Builder#dedupe}), so that a stream
+ * that is resubscribed by <tt>retry</tt> or <tt>repeat</tt> does not log the
+ * same error and stack trace over and over. The first occurrence of a line is
+ * logged, later occurrences within the window are only counted and when the
+ * window closes a summary line with the count of repeats is logged.
+ *
+ * <p>
+ * A line is identified by its level and text and, if it has an error, the
+ * error class, message and top stack frames. The open windows are kept in a
+ * concurrent map per level keyed by the text (only lines with an error
+ * allocate a key) so a repeat is counted without a lock. At most
+ * {@value #MAX_ENTRIES} windows are open: opening another closes the oldest
+ * early, logging its summary, so the next occurrence of that line is logged
+ * again.
+ *
+ * <p>
+ * The windows are closed by one sweeper per operator that runs only while
+ * windows are open, so the cost of a new line is a map insertion rather than a
+ * timer. A window is closed at most an eighth of its length late. The summary
+ * is logged through the dispatcher of the subscription that logged the first
+ * occurrence.
+ */
+final class Dedupe {
+
+    private static final int MAX_ENTRIES = 1024;
+    private static final int TOP_FRAMES = 3;
+    private static final int SWEEPS_PER_WINDOW = 8;
+    // the repeats of a closed entry
+    private static final long CLOSED = -1;
+
+    private final long windowMs;
+    private final Scheduler scheduler;
+    private final Map<Level, ConcurrentMap<Object, Entry>> entries;
+    // the open windows in the order they were opened (so by expiry)
+    private final ConcurrentLinkedQueue<Entry> open = new ConcurrentLinkedQueue<Entry>();
+    // the number of open windows (the size of a ConcurrentLinkedQueue is not
+    // constant time)
+    private final AtomicInteger size = new AtomicInteger();
+    // non-null while a sweep is scheduled, guarded by this
+    private Worker sweeper;
+    private final Action0 sweep = this::sweep;
+
+    Dedupe(long windowMs, Scheduler scheduler) {
+        this.windowMs = windowMs;
+        this.scheduler = scheduler;
+        this.entries = new EnumMap<Level, ConcurrentMap<Object, Entry>>(Level.class);
+        for (Level level : Level.values())
+            entries.put(level, new ConcurrentHashMap<Object, Entry>());
+    }
+
+    /**
+     * Returns a dispatcher that drops the lines that repeat within the window
+     * and passes the others to the given dispatcher.
+     *
+     * @param dispatcher
+     *            dispatcher to pass lines to
+     * @return deduplicating dispatcher
+     */
+    Dispatcher wrap(final Dispatcher dispatcher) {
+        return new Dispatcher() {
+
+            @Override
+            public void dispatch(Logger logger, String message, Level level, Throwable error,
+                    KeyValues fields) {
+                if (isFirst(dispatcher, logger, text(message, fields), level, error))
+                    dispatcher.dispatch(logger, message, level, error, fields);
+            }
+
+            @Override
+            public void close() {
+                dispatcher.close();
+            }
+        };
+    }
+
+    private boolean isFirst(Dispatcher dispatcher, Logger logger, String message, Level level,
+            Throwable error) {
+        ConcurrentMap<Object, Entry> map = entries.get(level);
+        Object key = error == null ? message : new Key(message, error);
+        Entry created = null;
+        while (true) {
+            Entry entry = map.get(key);
+            if (entry != null) {
+                if (entry.repeat())
+                    return false;
+                // closed by the sweeper, open a new window
+                map.remove(key, entry);
+            } else {
+                if (created == null)
+                    created = new Entry(key, message, level, dispatcher, logger,
+                            scheduler.now() + windowMs);
+                if (map.putIfAbsent(key, created) == null)
+                    break;
+            }
+        }
+        open.add(created);
+        if (size.incrementAndGet() > MAX_ENTRIES) {
+            Entry eldest = open.poll();
+            if (eldest != null)
+                close(eldest);
+        }
+        synchronized (this) {
+            if (sweeper == null) {
+                sweeper = scheduler.createWorker();
+                sweeper.schedule(sweep, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        return true;
+    }
+
+    private void sweep() {
+        long now = scheduler.now();
+        Entry entry;
+        while ((entry = open.peek()) != null && entry.expiry <= now) {
+            // the entry may have been closed early by a concurrent insertion
+            if (open.remove(entry))
+                close(entry);
+        }
+        synchronized (this) {
+            // a window opened since the peek above takes the lock after this
+            // block and starts a new sweeper if this one stops
+            entry = open.peek();
+            if (entry == null) {
+                sweeper.unsubscribe();
+                sweeper = null;
+            } else {
+                long delay = Math.max(entry.expiry - now,
+                        Math.max(1, windowMs / SWEEPS_PER_WINDOW));
+                sweeper.schedule(sweep, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // called once per entry, by the thread that took it from open
+    private void close(Entry entry) {
+        size.decrementAndGet();
+        entries.get(entry.level).remove(entry.key, entry);
+        long repeats = entry.repeats.getAndSet(CLOSED);
+        if (repeats > 0) {
+            StringBuilder b = new StringBuilder(entry.message);
+            Logging.addDelimited(b, "repeated", repeats);
+            Logging.addDelimited(b, "window=");
+            appendDuration(b, TimeUnit.MILLISECONDS.toNanos(windowMs));
+            entry.dispatcher.dispatch(entry.logger, b.toString(), entry.level, null);
+        }
+    }
+
+    // structured fields are part of the identity of a line and are shown as
+    // text in the summary
+    private static String text(String message, KeyValues fields) {
+        if (fields == null || fields.isEmpty()) {
+            return message;
+        } else {
+            StringBuilder b = new StringBuilder(message);
+            Logging.addDelimited(b, fields.toString());
+            return b.toString();
+        }
+    }
+
+    /**
+     * The identity of a line with an error (the level is given by the map the
+     * key is in and a line without an error is identified by its text).
+     */
+    private static final class Key {
+        final String message;
+        final String errorClass;
+        final String errorMessage;
+        final StackTraceElement[] frames;
+        final int hash;
+
+        Key(String message, Throwable error) {
+            this.message = message;
+            this.errorClass = error.getClass().getName();
+            this.errorMessage = error.getMessage();
+            StackTraceElement[] all = error.getStackTrace();
+            this.frames = Arrays.copyOf(all, Math.min(TOP_FRAMES, all.length));
+            this.hash = 31 * message.hashCode() + errorClass.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return hash == k.hash && message.equals(k.message)
+                    && errorClass.equals(k.errorClass)
+                    && Objects.equals(errorMessage, k.errorMessage)
+                    && Arrays.equals(frames, k.frames);
+        }
+    }
+
+    private static final class Entry {
+        final Object key;
+        final String message;
+        final Level level;
+        final Dispatcher dispatcher;
+        final Logger logger;
+        final long expiry;
+        // CLOSED once the summary has been taken
+        final AtomicLong repeats = new AtomicLong();
+
+        Entry(Object key, String message, Level level, Dispatcher dispatcher, Logger logger,
+                long expiry) {
+            this.key = key;
+            this.message = message;
+            this.level = level;
+            this.dispatcher = dispatcher;
+            this.logger = logger;
+            this.expiry = expiry;
+        }
+
+        // returns false if the entry is closed
+        boolean repeat() {
+            while (true) {
+                long r = repeats.get();
+                if (r == CLOSED)
+                    return false;
+                if (repeats.compareAndSet(r, r + 1))
+                    return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Producer;
+
+/**
+ * Tracks the backpressure of one subscription for
+ * {@link Logging.Parameters.Builder#showRequests()}: the total requested by
+ * downstream (via the wrapped {@link Producer}), the number of items delivered
+ * and so the outstanding demand. Shown as
+ * <tt>requested=128, delivered=100, outstanding=28</tt> or
+ * <tt>requested=unbounded, delivered=100</tt>.
+ */
+final class Demand {
+
+    // requests may arrive on any thread
+    private final AtomicLong requested = new AtomicLong();
+    // updated by the serialized notifications only
+    private long delivered;
+
+    Producer wrap(final Producer producer) {
+        return n -> {
+            onRequest(n);
+            producer.request(n);
+        };
+    }
+
+    void onRequest(long n) {
+        if (n <= 0)
+            return;
+        while (true) {
+            long r = requested.get();
+            long u = r + n;
+            // saturate at Long.MAX_VALUE which means unbounded
+            if (u < 0)
+                u = Long.MAX_VALUE;
+            if (r == Long.MAX_VALUE || requested.compareAndSet(r, u))
+                return;
+        }
+    }
+
+    void onNext() {
+        delivered++;
+    }
+
+    void appendTo(StringBuilder b) {
+        long r = requested.get();
+        if (r == Long.MAX_VALUE) {
+            Logging.addDelimited(b, "requested=unbounded");
+            Logging.addDelimited(b, "delivered", delivered);
+        } else {
+            Logging.addDelimited(b, "requested", r);
+            Logging.addDelimited(b, "delivered", delivered);
+            Logging.addDelimited(b, "outstanding", r - delivered);
+        }
+    }
+}
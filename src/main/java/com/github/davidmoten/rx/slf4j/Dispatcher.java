@@ -0,0 +1,39 @@
+package com.github.davidmoten.rx.slf4j;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+
+/**
+ * Hands rendered log lines to SLF4J. One is created for every subscription to
+ * an {@link OperatorLogging}.
+ */
+interface Dispatcher {
+
+    /**
+     * Logs on the calling thread.
+     */
+    Dispatcher SYNC = Logging::log;
+
+    default void dispatch(Logger logger, String message, Level level, Throwable error) {
+        dispatch(logger, message, level, error, null);
+    }
+
+    /**
+     * Logs a line with structured fields.
+     *
+     * @param fields
+     *            the typed fields of a structured event (reused by the caller
+     *            after this call returns) or null
+     */
+    void dispatch(Logger logger, String message, Level level, Throwable error,
+            KeyValues fields);
+
+    /**
+     * Called when the subscription has terminated or been unsubscribed.
+     * Pending lines should be logged but no more lines will be dispatched.
+     */
+    default void close() {
+        // nothing to do
+    }
+}
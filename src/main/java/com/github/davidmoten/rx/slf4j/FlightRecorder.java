@@ -0,0 +1,182 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static com.github.davidmoten.rx.slf4j.LatencyReport.appendDuration;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+
+import rx.Notification.Kind;
+
+/**
+ * Keeps the last <tt>capacity</tt> notifications of each subscription in
+ * memory and logs them only when the stream fails (see
+ * {@link Logging.Parameters.Builder#flightRecorder(FlightRecorder)}) or when
+ * {@link #dump()} is called, so that the context before a failure is available
+ * without paying to log every item.
+ *
+ * <p>
+ * Recording an item stores the time, the notification kind, a reference to the
+ * value and the id of the emitting thread in preallocated arrays, nothing is
+ * rendered. Note that the last <tt>capacity</tt> values of each subscription
+ * are therefore kept reachable. When dumped the values are rendered as set by
+ * {@link Logging.Parameters.Builder#maxValueLength(int)} and
+ * {@link Logging.Parameters.Builder#valueRenderer(ValueRenderer)}. A recorder
+ * may be shared between operators.
+ */
+public final class FlightRecorder {
+
+    private final int capacity;
+    private final Level level;
+    // the recordings of subscriptions that have not been unsubscribed
+    private final Queue<Recording> recordings = new ConcurrentLinkedQueue<Recording>();
+
+    private FlightRecorder(int capacity, Level level) {
+        this.capacity = capacity;
+        this.level = level;
+    }
+
+    /**
+     * Returns a new recorder that keeps the last <tt>capacity</tt>
+     * notifications of each subscription and logs them at ERROR level.
+     *
+     * @param capacity
+     *            number of notifications kept per subscription
+     * @return new recorder
+     */
+    public static FlightRecorder create(int capacity) {
+        return create(capacity, Level.ERROR);
+    }
+
+    /**
+     * Returns a new recorder that keeps the last <tt>capacity</tt>
+     * notifications of each subscription and logs them at the given level.
+     *
+     * @param capacity
+     *            number of notifications kept per subscription
+     * @param level
+     *            level to log the recorded notifications at
+     * @return new recorder
+     */
+    public static FlightRecorder create(int capacity, Level level) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        return new FlightRecorder(capacity, level);
+    }
+
+    /**
+     * Logs the recorded notifications of every subscription that has not yet
+     * been unsubscribed. If a stream is emitting while it is dumped the most
+     * recent notifications may be missing or inconsistent.
+     */
+    public void dump() {
+        for (Recording r : recordings) {
+            // not through the dispatcher of the subscription which may be
+            // closing concurrently
+            r.dump("dump", Dispatcher.SYNC);
+        }
+    }
+
+    Recording start(Logger logger, Dispatcher dispatcher, Renderer<?> renderer, Clock clock) {
+        Recording r = new Recording(this, logger, dispatcher, renderer, clock);
+        recordings.add(r);
+        return r;
+    }
+
+    /**
+     * The ring buffer of the notifications of one subscription. Written by the
+     * serialized notifications of the subscription only.
+     */
+    static final class Recording {
+
+        private final FlightRecorder recorder;
+        private final Logger logger;
+        private final Dispatcher dispatcher;
+        private final Renderer<?> renderer;
+        private final Clock clock;
+        private final long[] times;
+        private final Kind[] kinds;
+        private final Object[] values;
+        private final long[] threads;
+        private int next;
+        private long count;
+
+        Recording(FlightRecorder recorder, Logger logger, Dispatcher dispatcher,
+                Renderer<?> renderer, Clock clock) {
+            this.recorder = recorder;
+            this.logger = logger;
+            this.dispatcher = dispatcher;
+            this.renderer = renderer;
+            this.clock = clock;
+            int capacity = recorder.capacity;
+            this.times = new long[capacity];
+            this.kinds = new Kind[capacity];
+            this.values = new Object[capacity];
+            this.threads = new long[capacity];
+        }
+
+        /**
+         * Records a notification.
+         *
+         * @param kind
+         *            notification kind
+         * @param value
+         *            the <i>onNext</i> value, the <i>onError</i> throwable or
+         *            null
+         */
+        void record(Kind kind, Object value) {
+            int i = next;
+            times[i] = clock.now();
+            kinds[i] = kind;
+            values[i] = value;
+            threads[i] = Thread.currentThread().getId();
+            next = i + 1 == times.length ? 0 : i + 1;
+            count++;
+        }
+
+        /**
+         * Records the error and logs the recorded notifications.
+         *
+         * @param e
+         *            the error
+         */
+        void onError(Throwable e) {
+            record(Kind.OnError, e);
+            dump("onError", dispatcher);
+        }
+
+        void close() {
+            recorder.recordings.remove(this);
+        }
+
+        private void dump(String reason, Dispatcher d) {
+            long n = Math.min(count, times.length);
+            long now = clock.now();
+            StringBuilder b = new StringBuilder(64 + (int) n * 48);
+            b.append("flight recorder ").append(reason);
+            Logging.addDelimited(b, "events", count);
+            Logging.addDelimited(b, "shown", n);
+            int start = count <= times.length ? 0 : next;
+            for (int j = 0; j < n; j++) {
+                int i = (start + j) % times.length;
+                b.append("\n  -");
+                appendDuration(b, TimeUnit.MILLISECONDS.toNanos(now - times[i]));
+                b.append(" thread=").append(threads[i]).append(' ');
+                if (kinds[i] == Kind.OnNext) {
+                    b.append("onNext ");
+                    renderer.appendValue(b, values[i]);
+                } else if (kinds[i] == Kind.OnError) {
+                    b.append("onError ");
+                    renderer.appendValue(b, values[i]);
+                } else {
+                    b.append("onCompleted");
+                }
+            }
+            d.dispatch(logger, b.toString(), recorder.level, null);
+        }
+    }
+}
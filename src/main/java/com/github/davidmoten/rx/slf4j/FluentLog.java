@@ -0,0 +1,118 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+
+/**
+ * Logs events with the SLF4J 2 fluent API (<tt>Logger.atLevel</tt> and
+ * <tt>LoggingEventBuilder</tt>). This library compiles against the SLF4J 1.7
+ * API so the fluent methods are looked up once as method handles and are only
+ * available if the API at runtime is SLF4J 2 (see {@link #isSupported()}).
+ */
+final class FluentLog {
+
+    // all null if the SLF4J API at runtime is 1.7
+    // (Logger, org.slf4j.event.Level) -> LoggingEventBuilder
+    private static final MethodHandle AT_LEVEL;
+    // (LoggingEventBuilder, String, Object) -> LoggingEventBuilder
+    private static final MethodHandle ADD_KEY_VALUE;
+    // (LoggingEventBuilder, Throwable) -> LoggingEventBuilder
+    private static final MethodHandle SET_CAUSE;
+    // (LoggingEventBuilder, String) -> void
+    private static final MethodHandle LOG;
+
+    static {
+        MethodHandle atLevel = null;
+        MethodHandle addKeyValue = null;
+        MethodHandle setCause = null;
+        MethodHandle log = null;
+        try {
+            Class<?> builder = Class.forName("org.slf4j.spi.LoggingEventBuilder", false,
+                    Logger.class.getClassLoader());
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            atLevel = lookup
+                    .findVirtual(Logger.class, "atLevel",
+                            methodType(builder, org.slf4j.event.Level.class))
+                    .asType(methodType(Object.class, Logger.class,
+                            org.slf4j.event.Level.class));
+            addKeyValue = lookup
+                    .findVirtual(builder, "addKeyValue",
+                            methodType(builder, String.class, Object.class))
+                    .asType(methodType(Object.class, Object.class, String.class, Object.class));
+            setCause = lookup
+                    .findVirtual(builder, "setCause", methodType(builder, Throwable.class))
+                    .asType(methodType(Object.class, Object.class, Throwable.class));
+            log = lookup.findVirtual(builder, "log", methodType(void.class, String.class))
+                    .asType(methodType(void.class, Object.class, String.class));
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException
+                | LinkageError e) {
+            // SLF4J 1.7
+            atLevel = null;
+        }
+        if (atLevel == null) {
+            AT_LEVEL = null;
+            ADD_KEY_VALUE = null;
+            SET_CAUSE = null;
+            LOG = null;
+        } else {
+            AT_LEVEL = atLevel;
+            ADD_KEY_VALUE = addKeyValue;
+            SET_CAUSE = setCause;
+            LOG = log;
+        }
+    }
+
+    private FluentLog() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns true if the SLF4J API at runtime has the fluent API (SLF4J 2).
+     *
+     * @return true if events with key/value pairs can be logged
+     */
+    static boolean isSupported() {
+        return AT_LEVEL != null;
+    }
+
+    /**
+     * Logs an event with key/value pairs. Must only be called if
+     * {@link #isSupported()}.
+     */
+    static void log(Logger logger, String message, Level level, Throwable error,
+            KeyValues fields) {
+        try {
+            Object b = (Object) AT_LEVEL.invokeExact(logger, toEventLevel(level));
+            for (int i = 0; i < fields.size(); i++) {
+                b = (Object) ADD_KEY_VALUE.invokeExact(b, fields.key(i), fields.value(i));
+            }
+            if (error != null)
+                b = (Object) SET_CAUSE.invokeExact(b, error);
+            LOG.invokeExact(b, message);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // the fluent methods declare no checked exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static org.slf4j.event.Level toEventLevel(Level level) {
+        if (level == Level.INFO)
+            return org.slf4j.event.Level.INFO;
+        else if (level == Level.DEBUG)
+            return org.slf4j.event.Level.DEBUG;
+        else if (level == Level.TRACE)
+            return org.slf4j.event.Level.TRACE;
+        else if (level == Level.WARN)
+            return org.slf4j.event.Level.WARN;
+        else
+            return org.slf4j.event.Level.ERROR;
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static com.github.davidmoten.rx.slf4j.LatencyReport.appendDuration;
+
+/**
+ * Tracks the time between consecutive <i>onNext</i> notifications of one
+ * subscription for {@link Logging.Parameters.Builder#showGaps()} and shows
+ * them as <tt>gaps=[min=.., mean=.., p99=.., max=.., burstiness=..]</tt>. The
+ * burstiness is <tt>(&sigma; - &mu;) / (&sigma; + &mu;)</tt> of the gaps
+ * (Goh and Barab&aacute;si) which is -1 for a perfectly regular source, about
+ * 0 for a Poisson source and approaches 1 for a very bursty source.
+ *
+ * <p>
+ * Items are recorded as they arrive from upstream, before any filtering of
+ * the logged lines, and the notifications are serialized so nothing is
+ * synchronized.
+ */
+final class Gaps {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private boolean started;
+    private long last;
+    private long min = Long.MAX_VALUE;
+    // running mean and sum of squared deviations (Welford)
+    private double mean;
+    private double m2;
+
+    void onNext() {
+        long now = System.nanoTime();
+        if (started) {
+            record(now - last);
+        } else {
+            started = true;
+        }
+        last = now;
+    }
+
+    /**
+     * Appends the statistics of the gaps so far (nothing if there are fewer
+     * than two items).
+     *
+     * @param message
+     *            message to append to
+     */
+    void appendTo(StringBuilder message) {
+        if (histogram.count() > 0) {
+            Logging.addDelimited(message, "gaps=[min=");
+            appendDuration(message, min);
+            message.append(", mean=");
+            appendDuration(message, Math.round(mean));
+            message.append(", p99=");
+            appendDuration(message, histogram.percentile(99));
+            message.append(", max=");
+            appendDuration(message, histogram.max());
+            message.append(", burstiness=");
+            Decimals.append(message, burstiness(), 2);
+            message.append(']');
+        }
+    }
+
+    private void record(long gap) {
+        histogram.record(gap);
+        if (gap < min)
+            min = gap;
+        double delta = gap - mean;
+        mean += delta / histogram.count();
+        m2 += delta * (gap - mean);
+    }
+
+    private double burstiness() {
+        double sd = Math.sqrt(m2 / histogram.count());
+        double sum = sd + mean;
+        return sum > 0 ? (sd - mean) / sum : 0;
+    }
+}
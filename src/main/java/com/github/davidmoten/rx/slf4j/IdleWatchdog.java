@@ -0,0 +1,215 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static com.github.davidmoten.rx.slf4j.LatencyReport.appendDuration;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+
+/**
+ * A hashed timer wheel shared by all the streams watched by
+ * {@link Logging.Parameters.Builder#warnIfIdle} on one {@link Scheduler}. A
+ * single periodic task ticks the wheel so watching thousands of streams costs
+ * one task rather than one per stream, and an <i>onNext</i> only increments a
+ * count (the wheel checks whether the count has changed) so items are never
+ * rescheduled. The task only runs while there are watched streams.
+ *
+ * <p>
+ * New watches are queued and put on the wheel by the tick task so that a
+ * watch is never added to a slot that the wheel has just passed.
+ */
+final class IdleWatchdog {
+
+    static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 512;
+
+    // the values are weak too because a watchdog refers to its scheduler,
+    // guarded by itself
+    private static final Map<Scheduler, WeakReference<IdleWatchdog>> WATCHDOGS = new WeakHashMap<Scheduler, WeakReference<IdleWatchdog>>();
+
+    private final Scheduler scheduler;
+    // used by the tick task only
+    private final ConcurrentLinkedQueue<Watch>[] wheel;
+    // watches not yet on the wheel
+    private final ConcurrentLinkedQueue<Watch> added = new ConcurrentLinkedQueue<Watch>();
+    // guarded by this
+    private int watches;
+    // guarded by this, non-null while there are watches
+    private Worker worker;
+    // held by the tick task so that a task of a released worker that is
+    // still running does not overlap the task of the next worker
+    private final Object ticking = new Object();
+    // guarded by ticking
+    private long tick;
+
+    private IdleWatchdog(Scheduler scheduler) {
+        this.scheduler = scheduler;
+        this.wheel = newWheel();
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<Watch>();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentLinkedQueue<Watch>[] newWheel() {
+        return (ConcurrentLinkedQueue<Watch>[]) new ConcurrentLinkedQueue<?>[WHEEL_SIZE];
+    }
+
+    static IdleWatchdog of(Scheduler scheduler) {
+        synchronized (WATCHDOGS) {
+            WeakReference<IdleWatchdog> ref = WATCHDOGS.get(scheduler);
+            IdleWatchdog w = ref == null ? null : ref.get();
+            if (w == null) {
+                w = new IdleWatchdog(scheduler);
+                WATCHDOGS.put(scheduler, new WeakReference<IdleWatchdog>(w));
+            }
+            return w;
+        }
+    }
+
+    /**
+     * Starts watching a subscription.
+     *
+     * @return the watch to notify of items and termination
+     */
+    Watch watch(Logger logger, Dispatcher dispatcher, Renderer<?> renderer, long durationMs) {
+        Watch w = new Watch(this, logger, dispatcher, renderer, durationMs, scheduler.now());
+        added.offer(w);
+        synchronized (this) {
+            if (watches++ == 0) {
+                worker = scheduler.createWorker();
+                worker.schedulePeriodically(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        return w;
+    }
+
+    private synchronized void release() {
+        if (--watches == 0) {
+            // the cancelled watches left on the wheel are dropped when it
+            // next passes them
+            worker.unsubscribe();
+            worker = null;
+        }
+    }
+
+    // called by the tick task only
+    private void add(Watch w, long delayMs) {
+        long ticks = Math.max(1, (delayMs + TICK_MS - 1) / TICK_MS);
+        w.deadline = tick + ticks;
+        wheel[(int) (w.deadline & (WHEEL_SIZE - 1))].offer(w);
+    }
+
+    private void tick() {
+        synchronized (ticking) {
+            long t = tick + 1;
+            tick = t;
+            Watch w;
+            while ((w = added.poll()) != null) {
+                w.schedule();
+            }
+            ConcurrentLinkedQueue<Watch> slot = wheel[(int) (t & (WHEEL_SIZE - 1))];
+            List<Watch> due = new ArrayList<Watch>();
+            while ((w = slot.poll()) != null) {
+                // cancelled watches are dropped
+                if (!w.cancelled.get())
+                    due.add(w);
+            }
+            long now = scheduler.now();
+            for (Watch watch : due) {
+                if (watch.deadline > t)
+                    // due in a later rotation of the wheel
+                    slot.offer(watch);
+                else
+                    watch.check(now);
+            }
+        }
+    }
+
+    /**
+     * The idle state of one subscription.
+     */
+    static final class Watch {
+
+        private final IdleWatchdog watchdog;
+        private final Logger logger;
+        private final Dispatcher dispatcher;
+        private final Renderer<?> renderer;
+        private final long durationMs;
+        // written by the emitting thread only
+        private final AtomicLong count = new AtomicLong();
+        private volatile Object lastValue;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicBoolean idle = new AtomicBoolean();
+        // used by the tick task only
+        private long deadline;
+        private long seenCount;
+        private long lastActiveTime;
+
+        Watch(IdleWatchdog watchdog, Logger logger, Dispatcher dispatcher,
+                Renderer<?> renderer, long durationMs, long now) {
+            this.watchdog = watchdog;
+            this.logger = logger;
+            this.dispatcher = dispatcher;
+            this.renderer = renderer;
+            this.durationMs = durationMs;
+            this.lastActiveTime = now;
+        }
+
+        void onNext(Object value) {
+            lastValue = value;
+            long n = count.get() + 1;
+            count.lazySet(n);
+            if (idle.get() && idle.compareAndSet(true, false)) {
+                StringBuilder b = new StringBuilder("items resumed");
+                Logging.addDelimited(b, "count", n);
+                dispatcher.dispatch(logger, b.toString(), Level.INFO, null);
+            }
+        }
+
+        void cancel() {
+            if (cancelled.compareAndSet(false, true))
+                watchdog.release();
+        }
+
+        private void schedule() {
+            // check twice per duration so a stall is reported within 1.5
+            // times the duration
+            watchdog.add(this, durationMs / 2);
+        }
+
+        private void check(long now) {
+            if (cancelled.get())
+                return;
+            long c = count.get();
+            if (c != seenCount) {
+                seenCount = c;
+                lastActiveTime = now;
+            } else if (!idle.get() && now - lastActiveTime >= durationMs
+                    && idle.compareAndSet(false, true)) {
+                StringBuilder b = new StringBuilder("no items for ");
+                appendDuration(b, TimeUnit.MILLISECONDS.toNanos(now - lastActiveTime));
+                Logging.addDelimited(b, "count", c);
+                if (c > 0) {
+                    Logging.addDelimited(b, "last=");
+                    renderer.appendValue(b, lastValue);
+                }
+                dispatcher.dispatch(logger, b.toString(), Level.WARN, null);
+            }
+            schedule();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.functions.Func1;
+
+/**
+ * Writes the notifications of logged streams as fixed layout binary records
+ * to memory-mapped files without going through SLF4J (see
+ * {@link Logging.Parameters.Builder#journal(Journal)}) so that every item of a
+ * fast stream can be traced. Use {@link JournalDecoder} to convert the files
+ * to text afterwards.
+ *
+ * <p>
+ * The journal is a sequence of files <tt>journal-NNNNNN.bin</tt> in a
+ * directory. When a file is full the next one is created and the oldest is
+ * deleted if there are more than <tt>maxFiles</tt>. Each file starts with the
+ * names of the operators so it can be decoded on its own.
+ *
+ * <p>
+ * A record is a 32 byte header followed by an optional payload padded to a
+ * multiple of 8 bytes:
+ *
+ * <pre>
+ * offset  size  field
+ * 0       1     type (0 marks the end of the records)
+ * 1       1     reserved
+ * 2       2     payload length
+ * 4       4     operator id
+ * 8       8     System.nanoTime()
+ * 16      8     count of items of the subscription
+ * 24      8     hash code of the onNext value (0 if there is a payload)
+ * </pre>
+ *
+ * The payload is the serialized <i>onNext</i> value (if a serializer was
+ * given), the UTF-8 message of an <i>onError</i> or the UTF-8 name of an
+ * operator. A journal may be shared by many operators and written to from many
+ * threads. Space for a record is reserved with one atomic increment.
+ *
+ * <p>
+ * Because threads write the records they have reserved concurrently, a file
+ * that is still being written may have a record that is reserved but not yet
+ * written ahead of complete ones. {@link JournalDecoder} stops at such a
+ * record, so decode a file only once the journal has rolled past it or has
+ * been closed (and the streams writing to it have stopped).
+ *
+ * <p>
+ * The mapping of a rolled file is not released explicitly (Java has no
+ * supported way to unmap a buffer that another thread may still be writing
+ * to), it is released when the buffer is garbage collected. Until then a
+ * deleted file still takes up its disk space and the mappings take up
+ * virtual address space, so choose <tt>fileSize</tt> large enough that files
+ * roll rarely.
+ */
+public final class Journal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(Journal.class);
+
+    static final int HEADER_BYTES = 32;
+    static final int MAX_PAYLOAD_BYTES = 0xFFFF;
+    static final int MAX_RECORD_BYTES = HEADER_BYTES + (MAX_PAYLOAD_BYTES + 7 & ~7);
+    // leaves room for the position to pass the end of a file without
+    // overflowing
+    static final int MAX_FILE_SIZE = Integer.MAX_VALUE - MAX_RECORD_BYTES;
+
+    static final byte OPERATOR = 1;
+    static final byte SUBSCRIBE = 2;
+    static final byte NEXT = 3;
+    static final byte ERROR = 4;
+    static final byte COMPLETED = 5;
+    static final byte UNSUBSCRIBE = 6;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".bin";
+
+    private final File directory;
+    private final int fileSize;
+    private final int maxFiles;
+    // guarded by this
+    private final List<String> operators = new ArrayList<String>();
+    // guarded by this
+    private int fileIndex;
+    private volatile Segment current;
+    private volatile boolean closed;
+
+    private Journal(File directory, int fileSize, int maxFiles) throws IOException {
+        this.directory = directory;
+        this.fileSize = fileSize;
+        this.maxFiles = maxFiles;
+        this.fileIndex = lastIndex(directory);
+        this.current = nextSegment();
+    }
+
+    /**
+     * Creates a journal writing to files of <tt>fileSize</tt> bytes in the
+     * given directory keeping at most <tt>maxFiles</tt> files. Numbering
+     * continues after any journal files already in the directory.
+     *
+     * @param directory
+     *            directory to write to (created if it does not exist)
+     * @param fileSize
+     *            size of each file in bytes (at least 1MB and less than
+     *            2GB - 64KB)
+     * @param maxFiles
+     *            maximum number of files kept
+     * @return new journal
+     * @throws IOException
+     *             if the first file cannot be created
+     */
+    public static Journal create(File directory, int fileSize, int maxFiles)
+            throws IOException {
+        if (fileSize < 1 << 20)
+            throw new IllegalArgumentException("fileSize must be at least 1MB");
+        if (fileSize > MAX_FILE_SIZE)
+            throw new IllegalArgumentException("fileSize must be at most " + MAX_FILE_SIZE);
+        if (maxFiles <= 0)
+            throw new IllegalArgumentException("maxFiles must be positive");
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("could not create directory " + directory);
+        return new Journal(directory, fileSize, maxFiles);
+    }
+
+    /**
+     * Flushes the current file to disk and stops writing. Records written
+     * afterwards are dropped.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            current.buffer.force();
+        }
+    }
+
+    /**
+     * Registers a logged operator and returns the specification that starts
+     * the journalling of each of its subscriptions.
+     */
+    synchronized <T> Spec<T> register(String name, Func1<? super T, byte[]> serializer) {
+        int id = operators.size();
+        operators.add(name);
+        append(OPERATOR, id, 0, 0, name.getBytes(StandardCharsets.UTF_8));
+        return new Spec<T>(this, id, serializer);
+    }
+
+    void append(byte type, int operator, long count, long value, byte[] payload) {
+        if (closed)
+            return;
+        int payloadLength = payload == null ? 0 : Math.min(payload.length, MAX_PAYLOAD_BYTES);
+        // keep records 8 byte aligned
+        int length = HEADER_BYTES + (payloadLength + 7 & ~7);
+        while (true) {
+            Segment s = current;
+            int position = s.position.getAndAdd(length);
+            // in long so that a position past the end cannot overflow
+            if ((long) position + length <= fileSize) {
+                s.write(position, type, operator, count, value, payload, payloadLength);
+                return;
+            }
+            if (!roll(s))
+                return;
+        }
+    }
+
+    /**
+     * Replaces the full segment with a new file unless another thread already
+     * has. Returns false if the journal can no longer be written.
+     */
+    private synchronized boolean roll(Segment full) {
+        if (closed)
+            return false;
+        if (current == full) {
+            try {
+                current = nextSegment();
+            } catch (IOException e) {
+                closed = true;
+                log.error("journal stopped, could not create the next file in " + directory,
+                        e);
+                return false;
+            }
+            File old = file(fileIndex - maxFiles);
+            if (old.exists() && !old.delete())
+                log.warn("could not delete old journal file " + old);
+        }
+        return true;
+    }
+
+    // called from the constructor or while holding the lock
+    private Segment nextSegment() throws IOException {
+        fileIndex++;
+        MappedByteBuffer buffer;
+        try (RandomAccessFile f = new RandomAccessFile(file(fileIndex), "rw")) {
+            f.setLength(0);
+            f.setLength(fileSize);
+            // the mapping stays valid after the channel is closed
+            buffer = f.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        }
+        Segment s = new Segment(buffer);
+        // repeat the operator names so that every file can be decoded alone
+        for (int id = 0; id < operators.size(); id++) {
+            byte[] name = operators.get(id).getBytes(StandardCharsets.UTF_8);
+            int length = HEADER_BYTES + (name.length + 7 & ~7);
+            s.write(s.position.getAndAdd(length), OPERATOR, id, 0, 0, name, name.length);
+        }
+        return s;
+    }
+
+    private File file(int index) {
+        return new File(directory, String.format("%s%06d%s", PREFIX, index, SUFFIX));
+    }
+
+    private static int lastIndex(File directory) {
+        int max = 0;
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.matches(PREFIX + "\\d{6}" + SUFFIX.replace(".", "\\."))) {
+                    max = Math.max(max, Integer.parseInt(
+                            name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                }
+            }
+        }
+        return max;
+    }
+
+    private static final class Segment {
+
+        final MappedByteBuffer buffer;
+        final AtomicInteger position = new AtomicInteger();
+
+        Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void write(int position, byte type, int operator, long count, long value,
+                byte[] payload, int payloadLength) {
+            // absolute puts only so that threads can write disjoint records
+            // concurrently
+            buffer.putShort(position + 2, (short) payloadLength);
+            buffer.putInt(position + 4, operator);
+            buffer.putLong(position + 8, System.nanoTime());
+            buffer.putLong(position + 16, count);
+            buffer.putLong(position + 24, value);
+            for (int i = 0; i < payloadLength; i++) {
+                buffer.put(position + HEADER_BYTES + i, payload[i]);
+            }
+            // written last so that a partly written record reads as the end
+            buffer.put(position, type);
+        }
+    }
+
+    /**
+     * The journalling of one logged operator, created at build time.
+     *
+     * @param <T>
+     *            type of items being logged
+     */
+    static final class Spec<T> {
+
+        private final Journal journal;
+        private final int operator;
+        // null if only the hash code of values is written
+        private final Func1<? super T, byte[]> serializer;
+
+        Spec(Journal journal, int operator, Func1<? super T, byte[]> serializer) {
+            this.journal = journal;
+            this.operator = operator;
+            this.serializer = serializer;
+        }
+
+        Writer<T> start() {
+            journal.append(SUBSCRIBE, operator, 0, 0, null);
+            return new Writer<T>(this);
+        }
+    }
+
+    /**
+     * Writes the records of one subscription. The notification methods must
+     * be serialized.
+     *
+     * @param <T>
+     *            type of items being logged
+     */
+    static final class Writer<T> {
+
+        private final Spec<T> spec;
+        private long count;
+
+        Writer(Spec<T> spec) {
+            this.spec = spec;
+        }
+
+        void onNext(T t) {
+            count++;
+            if (spec.serializer == null)
+                spec.journal.append(NEXT, spec.operator, count, t == null ? 0 : t.hashCode(),
+                        null);
+            else
+                spec.journal.append(NEXT, spec.operator, count, 0, spec.serializer.call(t));
+        }
+
+        void onCompleted() {
+            spec.journal.append(COMPLETED, spec.operator, count, 0, null);
+        }
+
+        void onError(Throwable e) {
+            spec.journal.append(ERROR, spec.operator, count, 0,
+                    String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        void close() {
+            spec.journal.append(UNSUBSCRIBE, spec.operator, count, 0, null);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import rx.functions.Func1;
+
+/**
+ * Converts the files written by a {@link Journal} to text, one line per
+ * record, in the form the {@link Logging.Parameters.Builder} defaults log with
+ * {@link Logging.Parameters.Builder#showCount()}, prefixed by the time since
+ * the first record of the file and the operator (logger) name:
+ *
+ * <pre>
+ * +0ns com.example.Pipeline onSubscribe
+ * +1.2us com.example.Pipeline 1, count=1
+ * +2.5us com.example.Pipeline 2, count=2
+ * +3.1us com.example.Pipeline onCompleted, count=2
+ * +3.4us com.example.Pipeline onUnsubscribe
+ * </pre>
+ *
+ * Values written without a serializer are shown as their hash code, for
+ * example <tt>#1f</tt>.
+ *
+ * <p>
+ * Decoding stops at the first record that has not been written yet. The
+ * result is complete only for a file the {@link Journal} has rolled past or
+ * after {@link Journal#close()}. A file that is still being written may have
+ * later records after a record another thread has reserved but not yet
+ * written.
+ */
+public final class JournalDecoder {
+
+    private static final Func1<byte[], String> UTF8 = bytes -> new String(bytes,
+            StandardCharsets.UTF_8);
+
+    private JournalDecoder() {
+        // prevent instantiation
+    }
+
+    /**
+     * Decodes the journal files given as arguments to standard output,
+     * rendering serialized values as UTF-8.
+     *
+     * @param args
+     *            journal files
+     * @throws IOException
+     *             if a file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        PrintStream out = System.out;
+        for (String arg : args) {
+            decode(new File(arg), UTF8, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Decodes a journal file rendering serialized values as UTF-8.
+     *
+     * @param file
+     *            journal file
+     * @param out
+     *            to append the lines to
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static void decode(File file, Appendable out) throws IOException {
+        decode(file, UTF8, out);
+    }
+
+    /**
+     * Decodes a journal file.
+     *
+     * @param file
+     *            journal file
+     * @param values
+     *            renders the serialized <i>onNext</i> values (the inverse of
+     *            the serializer given to the builder)
+     * @param out
+     *            to append the lines to
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static void decode(File file, Func1<byte[], ?> values, Appendable out)
+            throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+            buffer = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+        }
+        Map<Integer, String> operators = new HashMap<Integer, String>();
+        StringBuilder line = new StringBuilder();
+        long start = 0;
+        boolean first = true;
+        int position = 0;
+        while (position + Journal.HEADER_BYTES <= buffer.limit()) {
+            byte type = buffer.get(position);
+            if (type == 0)
+                // the end of the records (or a record still being written,
+                // whose length is not known yet)
+                break;
+            int payloadLength = buffer.getShort(position + 2) & 0xFFFF;
+            int operator = buffer.getInt(position + 4);
+            long time = buffer.getLong(position + 8);
+            long count = buffer.getLong(position + 16);
+            long value = buffer.getLong(position + 24);
+            byte[] payload = new byte[payloadLength];
+            for (int i = 0; i < payloadLength; i++) {
+                payload[i] = buffer.get(position + Journal.HEADER_BYTES + i);
+            }
+            position += Journal.HEADER_BYTES + (payloadLength + 7 & ~7);
+            if (type == Journal.OPERATOR) {
+                operators.put(operator, UTF8.call(payload));
+                continue;
+            }
+            if (first) {
+                start = time;
+                first = false;
+            }
+            line.setLength(0);
+            line.append('+');
+            LatencyReport.appendDuration(line, time - start);
+            line.append(' ').append(operators.get(operator)).append(' ');
+            if (type == Journal.SUBSCRIBE) {
+                line.append("onSubscribe");
+            } else if (type == Journal.UNSUBSCRIBE) {
+                line.append("onUnsubscribe");
+            } else {
+                if (type == Journal.NEXT) {
+                    if (payloadLength > 0)
+                        line.append(values.call(payload));
+                    else
+                        line.append('#').append(Integer.toHexString((int) value));
+                } else if (type == Journal.ERROR) {
+                    line.append(UTF8.call(payload));
+                } else {
+                    line.append("onCompleted");
+                }
+                Logging.addDelimited(line, "count", count);
+            }
+            out.append(line).append('\n');
+        }
+    }
+}
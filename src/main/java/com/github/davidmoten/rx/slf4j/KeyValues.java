@@ -0,0 +1,103 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+
+/**
+ * The typed fields of one structured log event (see
+ * {@link Logging.Parameters.Builder#structured()}). Steps add their values
+ * here (boxed but not rendered) instead of appending text to the message, and
+ * the event is logged with the SLF4J 2 fluent API so that appenders receive
+ * the values as key/value pairs.
+ *
+ * <p>
+ * An instance belongs to one subscription and is cleared and reused for
+ * every notification so it is not thread-safe. {@link #copy()} takes a
+ * snapshot for logging on another thread.
+ */
+final class KeyValues {
+
+    private String[] keys;
+    private Object[] values;
+    private int size;
+
+    KeyValues() {
+        this(8);
+    }
+
+    private KeyValues(int capacity) {
+        this.keys = new String[capacity];
+        this.values = new Object[capacity];
+    }
+
+    /**
+     * Returns true if the SLF4J API at runtime has the fluent
+     * <tt>LoggingEventBuilder</tt> (SLF4J 2). With SLF4J 1.7 structured
+     * logging falls back to text.
+     *
+     * @return true if structured events can be logged
+     */
+    static boolean isSupported() {
+        return FluentLog.isSupported();
+    }
+
+    void add(String key, Object value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    void clear() {
+        // release the values for garbage collection
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String key(int index) {
+        return keys[index];
+    }
+
+    Object value(int index) {
+        return values[index];
+    }
+
+    KeyValues copy() {
+        KeyValues k = new KeyValues(Math.max(1, size));
+        System.arraycopy(keys, 0, k.keys, 0, size);
+        System.arraycopy(values, 0, k.values, 0, size);
+        k.size = size;
+        return k;
+    }
+
+    /**
+     * Logs an event with these fields using the SLF4J 2 fluent API. Must
+     * only be called if {@link #isSupported()}.
+     */
+    void log(Logger logger, String message, Level level, Throwable error) {
+        FluentLog.log(logger, message, level, error, this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            Logging.addDelimited(b, keys[i] + "=" + values[i]);
+        }
+        return b.toString();
+    }
+}
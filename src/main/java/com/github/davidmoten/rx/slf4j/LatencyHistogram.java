@@ -0,0 +1,126 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed memory histogram of durations in nanoseconds with log-linear
+ * buckets (in the manner of HdrHistogram): values below 64ns are counted
+ * exactly and larger values are counted in 32 linear sub-buckets per power of
+ * two so that percentiles are reported to within about 3%. Values above
+ * 2<sup>36</sup>ns (about 69 seconds) are counted in the highest bucket but
+ * the maximum is exact.
+ *
+ * <p>
+ * A histogram belongs to one subscription and is only recorded to and read
+ * from by the serialized notifications of that subscription so it needs no
+ * synchronization. {@link Shared} is the thread-safe variant used to aggregate
+ * across subscriptions.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BITS = 36;
+    private static final long MAX_TRACKABLE = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = index(MAX_TRACKABLE) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+
+    void record(long nanos) {
+        long v = nanos < 0 ? 0 : nanos;
+        counts[index(Math.min(v, MAX_TRACKABLE))]++;
+        total++;
+        if (v > max)
+            max = v;
+    }
+
+    long count() {
+        return total;
+    }
+
+    long max() {
+        return max;
+    }
+
+    /**
+     * Returns the value in nanoseconds at the given percentile or 0 if
+     * nothing has been recorded.
+     *
+     * @param percentile
+     *            percentile between 0 and 100
+     * @return value at percentile
+     */
+    long percentile(double percentile) {
+        return percentile(counts, total, max, percentile);
+    }
+
+    private static long percentile(long[] counts, long total, long max, double percentile) {
+        if (total == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target)
+                return Math.min(value(i), max);
+        }
+        return max;
+    }
+
+    private static int index(long v) {
+        if (v < 2 * SUB_BUCKETS) {
+            return (int) v;
+        } else {
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS;
+            return shift * SUB_BUCKETS + (int) (v >>> shift);
+        }
+    }
+
+    // the middle of the range of values counted in the bucket
+    private static long value(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        } else {
+            int shift = index / SUB_BUCKETS - 1;
+            long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+            return (sub << shift) + (1L << shift) / 2;
+        }
+    }
+
+    /**
+     * A histogram that can be recorded to from many threads without locking
+     * and read while being recorded to (the result is then approximate).
+     */
+    static final class Shared {
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long v = nanos < 0 ? 0 : nanos;
+            counts.incrementAndGet(index(Math.min(v, MAX_TRACKABLE)));
+            long m = max.get();
+            while (v > m && !max.compareAndSet(m, v)) {
+                m = max.get();
+            }
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        long percentile(double percentile) {
+            // snapshot the counts so that the total matches them
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            return LatencyHistogram.percentile(snapshot, total, max.get(), percentile);
+        }
+    }
+}
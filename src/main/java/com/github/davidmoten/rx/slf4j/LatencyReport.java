@@ -0,0 +1,54 @@
+package com.github.davidmoten.rx.slf4j;
+
+/**
+ * Renders the percentiles of a {@link LatencyHistogram} requested by
+ * {@link Logging.Parameters.Builder#showLatencyPercentiles(double...)} as
+ * <tt>latency=[p50=12.0us, p99=1.3ms, max=2.0ms]</tt>.
+ */
+final class LatencyReport {
+
+    private final double[] percentiles;
+    private final String[] labels;
+
+    LatencyReport(double[] percentiles) {
+        this.percentiles = percentiles.clone();
+        this.labels = new String[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            double p = percentiles[i];
+            if (p < 0 || p > 100)
+                throw new IllegalArgumentException("percentiles must be between 0 and 100");
+            String label = String.valueOf(p);
+            labels[i] = "p" + (label.endsWith(".0") ? label.substring(0, label.length() - 2)
+                    : label);
+        }
+    }
+
+    void appendTo(StringBuilder b, LatencyHistogram histogram) {
+        if (histogram.count() == 0)
+            return;
+        Logging.addDelimited(b, "latency=[");
+        for (int i = 0; i < percentiles.length; i++) {
+            b.append(labels[i]).append('=');
+            appendDuration(b, histogram.percentile(percentiles[i]));
+            b.append(", ");
+        }
+        b.append("max=");
+        appendDuration(b, histogram.max());
+        b.append(']');
+    }
+
+    static void appendDuration(StringBuilder b, long nanos) {
+        if (nanos < 1000) {
+            b.append(nanos).append("ns");
+        } else if (nanos < 1000000) {
+            Decimals.append(b, nanos / 1000.0, 1);
+            b.append("us");
+        } else if (nanos < 1000000000) {
+            Decimals.append(b, nanos / 1000000.0, 1);
+            b.append("ms");
+        } else {
+            Decimals.append(b, nanos / 1000000000.0, 1);
+            b.append("s");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static com.github.davidmoten.rx.slf4j.LatencyReport.appendDuration;
+
+/**
+ * Times the lifecycle of one subscription for
+ * {@link Logging.Parameters.Builder#showLifecycle()}: the time from subscribe
+ * to the first <i>onNext</i>, the active duration (subscribe to terminal
+ * event, or to unsubscribe if the stream did not terminate) and the teardown
+ * latency (terminal event to unsubscribe). The timings are also recorded in
+ * the {@link Stats} shared by all subscriptions of the operator.
+ *
+ * <p>
+ * Notifications are serialized but subscribe and unsubscribe may happen on
+ * other threads so the times are volatile.
+ */
+final class Lifecycle {
+
+    private final Stats stats;
+    private final long subscribeTime;
+    private volatile boolean receivedFirst;
+    private volatile long firstItemTime;
+    private volatile boolean terminated;
+    private volatile long terminalTime;
+
+    Lifecycle(Stats stats) {
+        this.stats = stats;
+        this.subscribeTime = System.nanoTime();
+    }
+
+    void onNext() {
+        if (!receivedFirst) {
+            firstItemTime = System.nanoTime();
+            receivedFirst = true;
+            stats.recordFirstItem(firstItemTime - subscribeTime);
+        }
+    }
+
+    void onTerminate() {
+        if (!terminated) {
+            terminalTime = System.nanoTime();
+            terminated = true;
+            stats.recordActive(terminalTime - subscribeTime);
+        }
+    }
+
+    /**
+     * Records the unsubscription and appends the timings of this subscription
+     * and the percentiles across all subscriptions of the operator.
+     *
+     * @param b
+     *            message to append to
+     */
+    void onUnsubscribe(StringBuilder b) {
+        long now = System.nanoTime();
+        appendTimings(b);
+        if (terminated) {
+            stats.recordTeardown(now - terminalTime);
+            Logging.addDelimited(b, "teardown=");
+            appendDuration(b, now - terminalTime);
+        } else {
+            stats.recordActive(now - subscribeTime);
+            Logging.addDelimited(b, "active=");
+            appendDuration(b, now - subscribeTime);
+        }
+        stats.appendTo(b);
+    }
+
+    /**
+     * Appends the time to the first item and, if terminated, the active
+     * duration.
+     *
+     * @param b
+     *            message to append to
+     */
+    void appendTimings(StringBuilder b) {
+        if (receivedFirst) {
+            Logging.addDelimited(b, "firstItem=");
+            appendDuration(b, firstItemTime - subscribeTime);
+        }
+        if (terminated) {
+            Logging.addDelimited(b, "active=");
+            appendDuration(b, terminalTime - subscribeTime);
+        }
+    }
+
+    /**
+     * Lifecycle timings of all the subscriptions to one logging operator.
+     * Updated once or twice per subscription so recording is simply
+     * synchronized.
+     */
+    static final class Stats {
+
+        private final LatencyHistogram firstItem = new LatencyHistogram();
+        private final LatencyHistogram active = new LatencyHistogram();
+        private final LatencyHistogram teardown = new LatencyHistogram();
+
+        synchronized void recordFirstItem(long nanos) {
+            firstItem.record(nanos);
+        }
+
+        synchronized void recordActive(long nanos) {
+            active.record(nanos);
+        }
+
+        synchronized void recordTeardown(long nanos) {
+            teardown.record(nanos);
+        }
+
+        synchronized void appendTo(StringBuilder b) {
+            Logging.addDelimited(b, "all=[subscriptions=");
+            b.append(active.count());
+            append(b, "firstItemP99", firstItem);
+            append(b, "activeP99", active);
+            append(b, "teardownP99", teardown);
+            b.append(']');
+        }
+
+        private static void append(StringBuilder b, String label, LatencyHistogram h) {
+            if (h.count() > 0) {
+                b.append(", ").append(label).append('=');
+                appendDuration(b, h.percentile(99));
+            }
+        }
+    }
+}
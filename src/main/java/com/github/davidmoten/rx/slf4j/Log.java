@@ -1,8 +1,6 @@
 package com.github.davidmoten.rx.slf4j;
 
-import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -54,6 +52,21 @@ public final class Log {
     public static class Builder<T> {
 
         private final List<Transition<T>> transitions = new ArrayList<Transition<T>>();
+        private volatile Clock clock = Clock.system();
+
+        /**
+         * Sets the source of time for {@link #every(long, TimeUnit)} and
+         * {@link #rate(String, int, TimeUnit)}. The default is
+         * {@link Clock#system()}.
+         * 
+         * @param clock
+         *            the clock
+         * @return this
+         */
+        public Builder<T> clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
 
         /**
          * Includes in the log message with a count prefixed by the given
@@ -108,14 +121,18 @@ public final class Log {
 
         public Builder<T> every(final long every, TimeUnit unit) {
             final long deltaMs = unit.toMillis(every);
-            final AtomicLong nextTime = new AtomicLong(System.currentTimeMillis() + deltaMs);
+            // the first item starts the period
+            final AtomicLong nextTime = new AtomicLong(Long.MIN_VALUE);
             Func1<Func1<T, String>, Func1<T, String>> message = identity();
             Func1<Action1<T>, Action1<T>> action = chainAction(new Action2<Action1<T>, T>() {
                 @Override
                 public void call(Action1<T> action, T t) {
-                    long now = System.currentTimeMillis();
-                    if (nextTime.get() <= now) {
-                        nextTime.set(now + deltaMs);
+                    long now = clock.now();
+                    long next = nextTime.get();
+                    if (next == Long.MIN_VALUE) {
+                        nextTime.compareAndSet(Long.MIN_VALUE, now + deltaMs);
+                    } else if (next <= now && nextTime.compareAndSet(next, now + deltaMs)) {
+                        // only the thread that moves the period on logs
                         action.call(t);
                     }
                 }
@@ -142,11 +159,29 @@ public final class Log {
         }
 
         public Builder<T> memory() {
+            return memory(MemoryProbe.DEFAULT);
+        }
+
+        /**
+         * Includes the memory usage of the JVM in the log message, refreshed
+         * at most once per the given interval.
+         * 
+         * @param refreshInterval
+         *            maximum age of the figures shown
+         * @param unit
+         *            unit of refreshInterval
+         * @return builder
+         */
+        public Builder<T> memory(long refreshInterval, TimeUnit unit) {
+            return memory(MemoryProbe.create(refreshInterval, unit, false));
+        }
+
+        private Builder<T> memory(final MemoryProbe probe) {
             Func1<Func1<T, String>, Func1<T, String>> message = chainMessage(
                     new Func2<Func1<T, String>, T, String>() {
                         @Override
                         public String call(Func1<T, String> f, T t) {
-                            return Logging.memoryUsage();
+                            return probe.text();
                         }
                     });
             Func1<Action1<T>, Action1<T>> action = identity();
@@ -155,20 +190,16 @@ public final class Log {
         }
 
         public Builder<T> rate(final String prefix, final int over, final TimeUnit per) {
-            final DecimalFormat df = new DecimalFormat("#0.000");
-            final LinkedList<Long> times = new LinkedList<Long>();
+            final RateMeter meter = new RateMeter(over);
             Func1<Func1<T, String>, Func1<T, String>> message = chainMessage(
                     new Func2<Func1<T, String>, T, String>() {
                         @Override
                         public String call(Func1<T, String> f, T t) {
-                            long now = System.currentTimeMillis();
-                            long firstTime = times.peek();
+                            double rate = meter.rate(clock.now(), per);
                             StringBuilder line = new StringBuilder();
-                            if (firstTime < now) {
-                                double rate = times.size() / (double) (now - firstTime)
-                                        * per.toMillis(1);
+                            if (!Double.isNaN(rate)) {
                                 line.append(prefix);
-                                line.append(df.format(rate));
+                                Decimals.append(line, rate, 3);
                             }
                             return line.toString();
                         }
@@ -176,10 +207,7 @@ public final class Log {
             Func1<Action1<T>, Action1<T>> action = chainAction(new Action2<Action1<T>, T>() {
                 @Override
                 public void call(Action1<T> action, T t) {
-                    times.add(System.currentTimeMillis());
-                    if (times.size() == over + 1) {
-                        times.removeFirst();
-                    }
+                    meter.mark(clock.now());
                     action.call(t);
                 }
             });
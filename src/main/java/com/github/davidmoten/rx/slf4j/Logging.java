@@ -1,19 +1,24 @@
 package com.github.davidmoten.rx.slf4j;
 
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.davidmoten.rx.slf4j.Stage.Step;
+
 import rx.Notification;
+import rx.Notification.Kind;
 import rx.Observable;
 import rx.Observable.Operator;
-import rx.functions.Action1;
+import rx.Scheduler;
+import rx.functions.Func0;
 import rx.functions.Func1;
+import rx.schedulers.Schedulers;
 
 public class Logging {
 
@@ -24,6 +29,29 @@ public class Logging {
         INFO, WARN, DEBUG, TRACE, ERROR;
     }
 
+    /**
+     * What to do when the buffer of an asynchronous logging operator (see
+     * {@link Parameters.Builder#async(int, Scheduler, Overflow)}) is full.
+     */
+    public enum Overflow {
+        /**
+         * Discard the line being logged. A summary line with the number of
+         * dropped lines is logged at WARN level once there is space.
+         */
+        DROP_NEWEST,
+        /**
+         * Discard the oldest buffered line to make space. A summary line with
+         * the number of dropped lines is logged at WARN level.
+         */
+        DROP_OLDEST,
+        /**
+         * Wait on the emitting thread until there is space in the buffer.
+         * Note that this can deadlock if the scheduler runs the logging on
+         * the emitting thread.
+         */
+        BLOCK;
+    }
+
     public static class Parameters<T> {
 
         private final Logger logger;
@@ -32,16 +60,51 @@ public class Logging {
         private final Level subscribedLevel;
         private final Level unsubscribedLevel;
         private final List<Func1<Observable<Message<T>>, Observable<Message<T>>>> transformations;
+        private final List<Stage<T>> stages;
+        private final Renderer<T> renderer;
+        private final Func0<Dispatcher> dispatchers;
+        private final long checkLevelIntervalMs;
+        private final Clock clock;
+        private final LatencyReport latency;
+        private final Lifecycle.Stats lifecycleStats;
+        private final OperatorMetrics metrics;
+        private final Summary.Spec summary;
+        private final boolean showRequests;
+        private final boolean showGaps;
+        private final IdleWatchdog idleWatchdog;
+        private final long idleDurationMs;
+        private final FlightRecorder flightRecorder;
+        private final Journal.Spec<T> journal;
 
         private Parameters(Logger logger, String subscribedMessage, String unsubscribedMessage,
                 Level subscribedLevel, Level unsubscribedLevel,
-                List<Func1<Observable<Message<T>>, Observable<Message<T>>>> transformations) {
+                List<Func1<Observable<Message<T>>, Observable<Message<T>>>> transformations,
+                List<Stage<T>> stages, Renderer<T> renderer, Func0<Dispatcher> dispatchers,
+                long checkLevelIntervalMs, Clock clock, LatencyReport latency,
+                Lifecycle.Stats lifecycleStats, OperatorMetrics metrics, Summary.Spec summary,
+                boolean showRequests, boolean showGaps, IdleWatchdog idleWatchdog,
+                long idleDurationMs, FlightRecorder flightRecorder, Journal.Spec<T> journal) {
             this.logger = logger;
             this.subscribedMessage = subscribedMessage;
             this.unsubscribedMessage = unsubscribedMessage;
             this.subscribedLevel = subscribedLevel;
             this.unsubscribedLevel = unsubscribedLevel;
             this.transformations = transformations;
+            this.stages = stages;
+            this.renderer = renderer;
+            this.dispatchers = dispatchers;
+            this.checkLevelIntervalMs = checkLevelIntervalMs;
+            this.clock = clock;
+            this.latency = latency;
+            this.lifecycleStats = lifecycleStats;
+            this.metrics = metrics;
+            this.summary = summary;
+            this.showRequests = showRequests;
+            this.showGaps = showGaps;
+            this.idleWatchdog = idleWatchdog;
+            this.idleDurationMs = idleDurationMs;
+            this.flightRecorder = flightRecorder;
+            this.journal = journal;
         }
 
         public Logger getLogger() {
@@ -64,10 +127,164 @@ public class Logging {
             return unsubscribedLevel;
         }
 
+        /**
+         * Returns the transformations of the materialized notifications
+         * including the final one that logs them.
+         * 
+         * @return transformations
+         */
         public List<Func1<Observable<Message<T>>, Observable<Message<T>>>> getTransformations() {
+            List<Func1<Observable<Message<T>>, Observable<Message<T>>>> list = new ArrayList<Func1<Observable<Message<T>>, Observable<Message<T>>>>(
+                    transformations);
+            list.add(observable -> Observable.defer(() -> {
+                final Dispatcher dispatcher = createDispatcher();
+                return render(observable, dispatcher).doOnUnsubscribe(dispatcher::close);
+            }));
+            return list;
+        }
+
+        /**
+         * Returns the transformations of the materialized notifications
+         * before they are logged by {@link #render(Observable, Dispatcher)}.
+         * 
+         * @return transformations
+         */
+        List<Func1<Observable<Message<T>>, Observable<Message<T>>>> getStepTransformations() {
             return transformations;
         }
 
+        /**
+         * Logs the materialized notifications through the given dispatcher.
+         */
+        Observable<Message<T>> render(Observable<Message<T>> observable,
+                final Dispatcher dispatcher) {
+            return observable.doOnNext(m -> {
+                Notification<T> n = m.value();
+                renderer.log(n.getKind(), n.getValue(), n.getThrowable(), m.message(), null,
+                        new StringBuilder(), dispatcher);
+            });
+        }
+
+        /**
+         * Returns the stages that can be run inline by {@link OperatorLogging}
+         * before the final line is rendered or null if the builder contained
+         * a transformation that cannot be fused (see {@link Builder#to}).
+         * 
+         * @return fusable stages or null
+         */
+        List<Stage<T>> getStages() {
+            return stages;
+        }
+
+        Renderer<T> getRenderer() {
+            return renderer;
+        }
+
+        /**
+         * Returns a new {@link Dispatcher} for a subscription.
+         * 
+         * @return dispatcher
+         */
+        Dispatcher createDispatcher() {
+            return dispatchers.call();
+        }
+
+        /**
+         * Returns the interval in milliseconds between checks of whether the
+         * logging levels are enabled. If zero then the levels are checked
+         * once only at subscription time.
+         * 
+         * @return interval in ms between level checks
+         */
+        long getCheckLevelIntervalMs() {
+            return checkLevelIntervalMs;
+        }
+
+        Clock getClock() {
+            return clock;
+        }
+
+        /**
+         * Returns the report of the time taken by downstream to process each
+         * <i>onNext</i> or null if latency is not shown.
+         * 
+         * @return latency report or null
+         */
+        LatencyReport getLatency() {
+            return latency;
+        }
+
+        /**
+         * Returns the lifecycle timings of all subscriptions to the operator
+         * or null if the lifecycle is not shown.
+         * 
+         * @return lifecycle stats or null
+         */
+        Lifecycle.Stats getLifecycleStats() {
+            return lifecycleStats;
+        }
+
+        /**
+         * Returns the registered metrics of the operator or null if it was not
+         * registered.
+         * 
+         * @return metrics or null
+         */
+        OperatorMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * Returns what to report periodically for each subscription or null
+         * if no periodic summary was requested.
+         * 
+         * @return summary spec or null
+         */
+        Summary.Spec getSummary() {
+            return summary;
+        }
+
+        boolean isShowRequests() {
+            return showRequests;
+        }
+
+        boolean isShowGaps() {
+            return showGaps;
+        }
+
+        /**
+         * Returns the watchdog to warn of idle subscriptions or null if not
+         * requested.
+         * 
+         * @return watchdog or null
+         */
+        IdleWatchdog getIdleWatchdog() {
+            return idleWatchdog;
+        }
+
+        long getIdleDurationMs() {
+            return idleDurationMs;
+        }
+
+        /**
+         * Returns the recorder of the last notifications of each
+         * subscription or null if not requested.
+         * 
+         * @return flight recorder or null
+         */
+        FlightRecorder getFlightRecorder() {
+            return flightRecorder;
+        }
+
+        /**
+         * Returns the journalling of this operator or null if not requested.
+         * 
+         * @return journal spec or null
+         */
+        Journal.Spec<T> getJournal() {
+            return journal;
+        }
+
         public static <T> Builder<T> builder() {
             return new Builder<T>();
         }
@@ -121,10 +338,40 @@ public class Logging {
                 }
             };
             private boolean logStackTrace = false;
-            private boolean logMemory = false;
+            private MemoryProbe memoryProbe;
+            private long checkLevelIntervalMs = 0;
+            private Clock clock = Clock.system();
+            private LatencyReport latency;
+            private boolean showLifecycle;
+            private String metricsName;
+            private long summaryPeriodMs;
+            private Scheduler summaryScheduler;
+            private boolean showRequests;
+            private boolean showGaps;
+            private long idleDurationMs;
+            private Scheduler idleScheduler;
+            private FlightRecorder flightRecorder;
+            private Journal journal;
+            private ValueRenderer valueRenderer;
+            private int maxValueLength = Integer.MAX_VALUE;
+            private Func1<? super T, byte[]> journalSerializer;
+            private long dedupeWindowMs;
+            private boolean structured;
+            private Scheduler dedupeScheduler;
+            private Scheduler asyncScheduler;
+            private int asyncBufferSize;
+            private Overflow asyncOverflow;
 
             private final List<Func1<Observable<Message<T>>, Observable<Message<T>>>> transformations = new ArrayList<Func1<Observable<Message<T>>, Observable<Message<T>>>>();
 
+            private final List<Stage<T>> stages = new ArrayList<Stage<T>>();
+
+            // false once an arbitrary transformation has been added via to()
+            private boolean fusable = true;
+
+            // applied after all the stages and transformations, null if none
+            private RateLimiter limiter;
+
             public Logger getLogger() {
                 if (logger != null)
                     return logger;
@@ -214,21 +461,8 @@ public class Logging {
              */
             public Builder<T> onNext(final boolean logOnNext) {
                 this.logOnNext = logOnNext;
-                transformations.add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
-
-                    @Override
-                    public Observable<Message<T>> call(Observable<Message<T>> observable) {
-                        return observable.filter(new Func1<Message<T>, Boolean>() {
-
-                            @Override
-                            public Boolean call(Message<T> m) {
-                                return m.value().isOnNext() == logOnNext;
-                            }
-                        });
-
-                    }
-                });
-                return this;
+                return stage(fields -> (kind, value, error,
+                        message) -> kind == Kind.OnNext == logOnNext);
             }
 
             /**
@@ -240,21 +474,8 @@ public class Logging {
              */
             public Builder<T> onError(final boolean logOnError) {
                 this.logOnError = logOnError;
-                transformations.add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
-
-                    @Override
-                    public Observable<Message<T>> call(Observable<Message<T>> observable) {
-                        return observable.filter(new Func1<Message<T>, Boolean>() {
-
-                            @Override
-                            public Boolean call(Message<T> m) {
-                                return m.value().isOnError() == logOnError;
-                            }
-                        });
-
-                    }
-                });
-                return this;
+                return stage(fields -> (kind, value, error,
+                        message) -> kind == Kind.OnError == logOnError);
             }
 
             /**
@@ -323,7 +544,7 @@ public class Logging {
             }
 
             public Builder<T> showCount(final String label) {
-                return showCount(label, null);
+                return showCount(label, (Counter) null);
             }
 
             public Builder<T> showCount(AtomicLong count) {
@@ -331,27 +552,24 @@ public class Logging {
             }
 
             public Builder<T> showCount(final String label, final AtomicLong count) {
-                transformations.add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
+                return showCount(label, count == null ? null : Counter.of(count));
+            }
 
-                    @Override
-                    public Observable<Message<T>> call(Observable<Message<T>> observable) {
-                        return observable.map(new Func1<Message<T>, Message<T>>() {
-                            final AtomicLong c = count == null ? new AtomicLong(0) : count;
-
-                            @Override
-                            public Message<T> call(Message<T> m) {
-                                long val;
-                                if (m.value().isOnNext())
-                                    val = c.incrementAndGet();
-                                else
-                                    val = c.get();
-
-                                return m.append(label + "=" + val);
-                            }
-                        });
-                    }
+            public Builder<T> showCount(Counter count) {
+                return showCount("count", count);
+            }
+
+            public Builder<T> showCount(final String label, final Counter count) {
+                return stage(fields -> {
+                    final Counter c = count == null ? Counter.unshared() : count;
+                    return (kind, value, error, message) -> {
+                        if (kind == Kind.OnNext)
+                            c.increment();
+                        if (message != null)
+                            addField(message, fields, label, c.get());
+                        return true;
+                    };
                 });
-                return this;
             }
 
             public Builder<T> showCount() {
@@ -359,136 +577,299 @@ public class Logging {
             }
 
             public Builder<T> showRateSince(final String label, final long sinceMs) {
-                return showRateSince(label, sinceMs, null);
+                return showRateSince(label, sinceMs, (Counter) null);
             }
 
             public Builder<T> showRateSince(final String label, final long sinceMs,
                     final AtomicLong count) {
-                transformations.add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
+                return showRateSince(label, sinceMs, count == null ? null : Counter.of(count));
+            }
+
+            public Builder<T> showRateSince(final String label, final long sinceMs,
+                    final Counter count) {
+                return stage(fields -> new Step<T>() {
+                    final Counter c = count == null ? Counter.unshared() : count;
+                    final Clock clock = Builder.this.clock;
+                    long lastTime = 0;
+                    long lastNum = 0;
+                    double rate = 0;
 
                     @Override
-                    public Observable<Message<T>> call(Observable<Message<T>> observable) {
-                        return observable.map(new Func1<Message<T>, Message<T>>() {
-                            final AtomicLong c = count == null ? new AtomicLong(0) : count;
-                            volatile long lastTime = 0;
-                            volatile long lastNum = 0;
-                            volatile double rate = 0;
-
-                            @Override
-                            public Message<T> call(Message<T> m) {
-                                long t = System.currentTimeMillis();
-                                long num;
-                                if (m.value().isOnNext()) {
-                                    num = c.incrementAndGet();
-                                } else
-                                    num = c.get();
-                                long diffMs = t - lastTime;
-                                if (diffMs >= sinceMs) {
-                                    rate = (num - lastNum) * 1000.0 / diffMs;
-                                    lastTime = t;
-                                    lastNum = num;
-                                }
-                                return m.append(label + "=" + rate);
-                            }
-                        });
+                    public boolean call(Kind kind, T value, Throwable error, StringBuilder message) {
+                        long t = clock.now();
+                        if (kind == Kind.OnNext)
+                            c.increment();
+                        long diffMs = t - lastTime;
+                        if (diffMs >= sinceMs) {
+                            long num = c.get();
+                            rate = (num - lastNum) * 1000.0 / diffMs;
+                            lastTime = t;
+                            lastNum = num;
+                        }
+                        if (message != null)
+                            addField(message, fields, label, rate);
+                        return true;
                     }
                 });
+            }
+
+            /**
+             * Shows the rate of <i>onNext</i> notifications over the most
+             * recent <tt>over</tt> items (a sliding window) per the given time
+             * unit. This is the same windowed rate that
+             * {@link Log.Builder#rate(String, int, TimeUnit)} reports. The
+             * rate is not shown while no time (as measured by the
+             * {@link #clock(Clock)}) has passed since the oldest item in the
+             * window, for example on the first item.
+             * 
+             * @param label
+             *            label of the rate in the log message
+             * @param over
+             *            number of most recent items to measure the rate over
+             * @param per
+             *            unit of the rate (for example per second)
+             * @return builder
+             */
+            public Builder<T> showRate(final String label, final int over, final TimeUnit per) {
+                if (over <= 0)
+                    throw new IllegalArgumentException("over must be positive");
+                return stage(fields -> {
+                    final RateMeter meter = new RateMeter(over);
+                    final Clock clock = this.clock;
+                    return (kind, value, error, message) -> {
+                        long t = clock.now();
+                        if (kind == Kind.OnNext)
+                            meter.mark(t);
+                        if (message != null) {
+                            double rate = meter.rate(t, per);
+                            // the rate is NaN if no time has elapsed since
+                            // the oldest item in the window
+                            if (!Double.isNaN(rate))
+                                addRate(message, fields, label, rate);
+                        }
+                        return true;
+                    };
+                });
+            }
+
+            /**
+             * Shows the minimum, mean, 99th percentile and maximum of the time
+             * between consecutive <i>onNext</i> notifications and a
+             * burstiness index between -1 (regular) and 1 (bursty), for
+             * example
+             * <tt>gaps=[min=2.0us, mean=1.1ms, p99=9.8ms, max=20.3ms, burstiness=0.41]</tt>.
+             * The gaps are kept per subscription in a fixed memory histogram
+             * and are between all the items from upstream, not just those
+             * that are logged (see {@link #when(Func1)} and
+             * {@link #every(int)}).
+             * 
+             * @return builder
+             */
+            public Builder<T> showGaps() {
+                this.showGaps = true;
                 return this;
             }
 
             public Builder<T> showRateSinceStart(final String label) {
-                return showRateSinceStart(label, null);
+                return showRateSinceStart(label, (Counter) null);
             }
 
             public Builder<T> showRateSinceStart(final String label, final AtomicLong count) {
-                transformations.add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
+                return showRateSinceStart(label, count == null ? null : Counter.of(count));
+            }
+
+            public Builder<T> showRateSinceStart(final String label, final Counter count) {
+                return stage(fields -> new Step<T>() {
+                    final Counter c = count == null ? Counter.unshared() : count;
+                    final Clock clock = Builder.this.clock;
+                    boolean started;
+                    long startTime;
+                    double rate = 0;
 
                     @Override
-                    public Observable<Message<T>> call(Observable<Message<T>> observable) {
-                        return observable.map(new Func1<Message<T>, Message<T>>() {
-                            final AtomicLong c = count == null ? new AtomicLong(0) : count;
-                            volatile long startTime = 0;
-                            volatile double rate = 0;
-
-                            @Override
-                            public Message<T> call(Message<T> m) {
-                                long t = System.currentTimeMillis();
-                                if (startTime == 0)
-                                    startTime = t;
-                                long num;
-                                if (m.value().isOnNext())
-                                    num = c.incrementAndGet();
-                                else
-                                    num = c.get();
-
-                                long diffMs = t - startTime;
-                                if (diffMs > 0) {
-                                    rate = num * 1000.0 / diffMs;
-                                }
-                                return m.append(label + "=" + rate);
+                    public boolean call(Kind kind, T value, Throwable error, StringBuilder message) {
+                        long t = clock.now();
+                        if (!started) {
+                            started = true;
+                            startTime = t;
+                        }
+                        if (kind == Kind.OnNext)
+                            c.increment();
+                        if (message != null) {
+                            long diffMs = t - startTime;
+                            if (diffMs > 0) {
+                                rate = c.get() * 1000.0 / diffMs;
                             }
-                        });
+                            addField(message, fields, label, rate);
+                        }
+                        return true;
                     }
                 });
-                return this;
             }
 
             public Builder<T> every(final int every) {
-                return every(every, (AtomicLong) null);
+                return every(every, (Counter) null);
             }
 
             public Builder<T> every(long duration, TimeUnit unit) {
                 if (duration > 0) {
                     final long durationMs = unit.toMillis(duration);
-                    transformations
-                            .add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
-
-                                @Override
-                                public Observable<Message<T>> call(Observable<Message<T>> observable) {
-                                    return observable.filter(new Func1<Message<T>, Boolean>() {
-                                        long lastTime = 0;
-
-                                        @Override
-                                        public Boolean call(Message<T> t) {
-                                            long now = System.currentTimeMillis();
-                                            if (now - lastTime > durationMs) {
-                                                lastTime = now;
-                                                return true;
-                                            } else
-                                                return false;
-                                        }
-                                    });
-                                }
-                            });
+                    return stage(fields -> new Step<T>() {
+                        final Clock clock = Builder.this.clock;
+                        boolean logged;
+                        long lastTime;
+
+                        @Override
+                        public boolean call(Kind kind, T value, Throwable error,
+                                StringBuilder message) {
+                            long now = clock.now();
+                            if (!logged || now - lastTime > durationMs) {
+                                logged = true;
+                                lastTime = now;
+                                return true;
+                            } else
+                                return false;
+                        }
+                    });
                 }
                 return this;
             }
 
+            /**
+             * Limits the lines logged by this operator (across all its
+             * subscriptions) to bursts of up to <tt>maxLines</tt> and at most
+             * <tt>maxLines</tt> per <tt>per</tt>. The first line logged after
+             * lines have been suppressed shows <tt>suppressed=N</tt>. The
+             * budget is timed by {@link Clock#monotonic()} whatever
+             * {@link #clock(Clock)} is set to (pass a limiter created with
+             * another clock to {@link #limit(RateLimiter)} instead).
+             *
+             * @param maxLines
+             *            maximum number of lines per period
+             * @param per
+             *            length of the period
+             * @param unit
+             *            unit of per
+             * @return builder
+             */
+            public Builder<T> limit(int maxLines, long per, TimeUnit unit) {
+                return limit(RateLimiter.create(maxLines, per, unit));
+            }
+
+            /**
+             * Limits the lines logged using the given {@link RateLimiter}
+             * which may be shared with other operators to give them a common
+             * budget. The first line logged after lines have been suppressed
+             * shows <tt>suppressed=N</tt>.
+             *
+             * <p>
+             * Wherever it is called in the chain the limit is applied to the
+             * <i>onNext</i>, <i>onError</i> and <i>onCompleted</i> lines after
+             * all the other steps (like {@link #when(Func1)},
+             * {@link #every(int)} and {@link #to(Func1)}), so lines that they
+             * drop or whose level is disabled do not use the budget. The
+             * subscription, unsubscription and periodic summary lines are not
+             * limited. Calling this again replaces the limiter. The budget is
+             * timed by the clock the limiter was created with, not
+             * {@link #clock(Clock)}.
+             *
+             * @param limiter
+             *            the line budget
+             * @return builder
+             */
+            public Builder<T> limit(RateLimiter limiter) {
+                this.limiter = limiter;
+                return this;
+            }
+
             public Builder<T> every(final int every, final AtomicLong count) {
+                return every(every, count == null ? null : Counter.of(count));
+            }
+
+            /**
+             * Only logs every Nth <i>onNext</i> notification counted by the
+             * given counter (which may be shared with other operators). If the
+             * counter is striped and incremented from more than one thread
+             * then one in every N items <i>per thread</i> is logged.
+             * 
+             * @param every
+             *            log every Nth item
+             * @param count
+             *            counter to use or null for a per-subscription counter
+             * @return builder
+             */
+            public Builder<T> every(final int every, final Counter count) {
                 if (every > 1) {
-                    transformations
-                            .add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
-
-                                @Override
-                                public Observable<Message<T>> call(Observable<Message<T>> observable) {
-                                    return observable.filter(new Func1<Message<T>, Boolean>() {
-                                        final AtomicLong c = count == null ? new AtomicLong(0)
-                                                : count;
-
-                                        @Override
-                                        public Boolean call(Message<T> t) {
-                                            if (t.value().isOnNext())
-                                                return c.incrementAndGet() % every == 0;
-                                            else
-                                                return true;
-                                        }
-                                    });
-                                }
-                            });
+                    return stage(fields -> {
+                        final Counter c = count == null ? Counter.unshared() : count;
+                        return (kind, value, error, message) -> kind != Kind.OnNext
+                                || c.incrementAndSample() % every == 0;
+                    });
                 }
                 return this;
             }
 
+            /**
+             * Logs each <i>onNext</i> notification with the given probability.
+             * Uses {@link ThreadLocalRandom} so that concurrent streams share
+             * no state and, unlike {@link #every(int)}, does not alias with
+             * periodic patterns in the input.
+             * 
+             * @param probability
+             *            probability between 0 and 1 that an item is logged
+             * @return builder
+             */
+            public Builder<T> sample(final double probability) {
+                if (probability < 0 || probability > 1)
+                    throw new IllegalArgumentException("probability must be between 0 and 1");
+                return stage(fields -> (kind, value, error, message) -> kind != Kind.OnNext
+                        || ThreadLocalRandom.current().nextDouble() < probability);
+            }
+
+            /**
+             * Logs a uniform random sample of at most <tt>k</tt> <i>onNext</i>
+             * values from each time window as <tt>sample=[v1, v2, ...]</tt>.
+             * The sample is logged with the first item that arrives after the
+             * window has ended or with the terminal notification. Other
+             * <i>onNext</i> notifications are not logged.
+             * 
+             * @param k
+             *            maximum number of values sampled per window
+             * @param window
+             *            length of the window
+             * @param unit
+             *            unit of window
+             * @return builder
+             */
+            public Builder<T> sampleReservoir(final int k, long window, TimeUnit unit) {
+                if (k <= 0)
+                    throw new IllegalArgumentException("k must be positive");
+                final long windowMs = unit.toMillis(window);
+                return stage(fields -> new ReservoirStep<T>("sample", k, windowMs, clock));
+            }
+
+            /**
+             * Logs the <i>onNext</i> notifications of a consistent fraction of
+             * the keys. Whether a key is logged depends only on its
+             * {@link Object#hashCode()} so all items with the same key are
+             * either logged or not, across subscriptions and operators.
+             * 
+             * @param keyFunction
+             *            returns the key of an item
+             * @param rate
+             *            the fraction between 0 and 1 of keys that are logged
+             * @return builder
+             */
+            public Builder<T> sampleByKey(final Func1<? super T, ?> keyFunction,
+                    final double rate) {
+                if (rate < 0 || rate > 1)
+                    throw new IllegalArgumentException("rate must be between 0 and 1");
+                // compare as unsigned 32 bit values
+                final long threshold = (long) (rate * (1L << 32));
+                return stage(fields -> (kind, value, error, message) -> kind != Kind.OnNext
+                        || (mix(keyFunction.call(value)) & 0xFFFFFFFFL) < threshold);
+            }
+
             public Builder<T> showValue(boolean logValue) {
                 if (logValue)
                     return showValue();
@@ -507,6 +888,45 @@ public class Logging {
                 return this;
             }
 
+            /**
+             * Limits the rendering of each <i>onNext</i> value to
+             * <tt>maxLength</tt> characters (followed by <tt>...</tt> if
+             * truncated) using {@link ValueRenderer#bounded()} unless
+             * another renderer is set with
+             * {@link #valueRenderer(ValueRenderer)}. Collections, maps,
+             * arrays and {@link CharSequence}s are rendered element by
+             * element and rendering stops at the limit, so logging a huge
+             * batch or payload does not build a huge string. <tt>byte[]</tt>
+             * values are shown as their length and leading bytes in hex.
+             * Applies to the value after {@link #value(Func1)}.
+             * 
+             * @param maxLength
+             *            maximum number of characters of a value
+             * @return builder
+             */
+            public Builder<T> maxValueLength(int maxLength) {
+                if (maxLength <= 0)
+                    throw new IllegalArgumentException("maxLength must be positive");
+                this.maxValueLength = maxLength;
+                if (valueRenderer == null)
+                    valueRenderer = ValueRenderer.bounded();
+                return this;
+            }
+
+            /**
+             * Renders <i>onNext</i> values with the given renderer, limited to
+             * the length set by {@link #maxValueLength(int)} (unlimited by
+             * default).
+             * 
+             * @param renderer
+             *            renders values into the log line
+             * @return builder
+             */
+            public Builder<T> valueRenderer(ValueRenderer renderer) {
+                this.valueRenderer = renderer;
+                return this;
+            }
+
             public Builder<T> excludeValue() {
                 onNextFormat = "";
                 return this;
@@ -518,42 +938,39 @@ public class Logging {
             }
 
             public Builder<T> when(final Func1<? super T, Boolean> when) {
-                transformations.add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
-
-                    @Override
-                    public Observable<Message<T>> call(Observable<Message<T>> observable) {
-                        return observable.filter(new Func1<Message<T>, Boolean>() {
-                            @Override
-                            public Boolean call(Message<T> t) {
-                                if (t.value().isOnNext())
-                                    return when.call(t.value().getValue());
-                                else
-                                    return true;
-                            }
-                        });
-                    }
-                });
-                return this;
+                return stage(fields -> (kind, value, error, message) -> kind != Kind.OnNext
+                        || when.call(value));
             }
 
             public Builder<T> start(final long start) {
-                transformations.add(observable -> Observable.defer(() -> {
-                    AtomicLong count = new AtomicLong(0);
-                    return observable.filter(t -> !t.value().isOnNext() || start <= count.incrementAndGet());
-                }));
-                return this;
+                return stage(fields -> {
+                    final Counter count = Counter.unshared();
+                    return (kind, value, error, message) -> kind != Kind.OnNext
+                            || start <= count.incrementAndSample();
+                });
             }
-            
+
             public Builder<T> finish(final long finish) {
-                transformations.add(observable -> Observable.defer(() -> {
-                    AtomicLong count = new AtomicLong(0);
-                    return observable.filter(t -> !t.value().isOnNext() || finish >= count.incrementAndGet());
-                }));
-                return this;
+                return stage(fields -> {
+                    final Counter count = Counter.unshared();
+                    return (kind, value, error, message) -> kind != Kind.OnNext
+                            || finish >= count.incrementAndSample();
+                });
             }
-            
+
+            /**
+             * Adds an arbitrary transformation of the stream of log messages.
+             * Note that using this method prevents the logging steps being
+             * fused into the parent subscriber so the logging will be
+             * performed by a materialized Rx pipeline instead (slower).
+             * 
+             * @param f
+             *            transformation
+             * @return this
+             */
             public Builder<T> to(
                     final Func1<Observable<? super Message<T>>, Observable<Message<T>>> f) {
+                fusable = false;
                 transformations.add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
 
                     @Override
@@ -564,75 +981,596 @@ public class Logging {
                 return this;
             }
 
+            /**
+             * Shows the memory usage of the JVM. The figures are shared by
+             * all operators and are refreshed at most every 100ms.
+             * 
+             * @return builder
+             */
             public Builder<T> showMemory() {
-                logMemory = true;
+                memoryProbe = MemoryProbe.DEFAULT;
                 return this;
             }
 
-            public OperatorLogging<T> log() {
-                transformations.add(new Func1<Observable<Message<T>>, Observable<Message<T>>>() {
+            /**
+             * Shows the memory usage of the JVM refreshed at most once per
+             * the given interval (zero to read the figures for every line).
+             * 
+             * @param refreshInterval
+             *            maximum age of the figures shown
+             * @param unit
+             *            unit of refreshInterval
+             * @return builder
+             */
+            public Builder<T> showMemory(long refreshInterval, TimeUnit unit) {
+                memoryProbe = MemoryProbe.create(refreshInterval, unit, false);
+                return this;
+            }
 
-                    @Override
-                    public Observable<Message<T>> call(Observable<Message<T>> observable) {
-                        return observable.doOnNext(log);
-                    }
-                });
-                return new OperatorLogging<T>(new Parameters<T>(getLogger(), subscribedMessage,
-                        unsubscribedMessage, subscribedLevel, unsubscribedLevel, transformations));
+            /**
+             * Shows the heap and non-heap usage reported by the
+             * {@link java.lang.management.MemoryMXBean} and the total count
+             * and time of garbage collections, refreshed at most once per the
+             * given interval.
+             * 
+             * @param refreshInterval
+             *            maximum age of the figures shown
+             * @param unit
+             *            unit of refreshInterval
+             * @return builder
+             */
+            public Builder<T> showMemoryDetails(long refreshInterval, TimeUnit unit) {
+                memoryProbe = MemoryProbe.create(refreshInterval, unit, true);
+                return this;
             }
 
-            private Builder<T> source() {
-                StackTraceElement[] elements = Thread.currentThread().getStackTrace();
-                String callingClassName = elements[4].getClassName();
-                return name(callingClassName);
+            /**
+             * Shows the 50th, 99th and 99.9th percentiles and the maximum of
+             * the time taken by the operators downstream of this one to
+             * process each <i>onNext</i>. See
+             * {@link #showLatencyPercentiles(double...)}.
+             * 
+             * @return builder
+             */
+            public Builder<T> showLatency() {
+                return showLatencyPercentiles(50, 99, 99.9);
             }
 
-            private final Action1<Message<T>> log = new Action1<Message<T>>() {
+            /**
+             * Shows the given percentiles and the maximum of the time taken by
+             * the operators downstream of this one to process each
+             * <i>onNext</i> (as <tt>latency=[p50=1.2us, max=3.0ms]</tt>). The
+             * times are recorded for the subscription into a fixed memory
+             * histogram so a logged line reports the items processed before
+             * it and the <i>onCompleted</i> line reports all items.
+             * 
+             * @param percentiles
+             *            percentiles between 0 and 100
+             * @return builder
+             */
+            public Builder<T> showLatencyPercentiles(double... percentiles) {
+                this.latency = new LatencyReport(percentiles);
+                return this;
+            }
 
-                @Override
-                public void call(Message<T> m) {
-
-                    if (m.value().isOnCompleted() && onCompleteMessage != null) {
-                        StringBuilder s = new StringBuilder();
-                        addDelimited(s, onCompleteMessage);
-                        addDelimited(s, m.message());
-                        addMemory(s);
-                        Logging.log(getLogger(), s.toString(), onCompletedLevel, null);
-                    } else if (m.value().isOnError() && logOnError) {
-                        StringBuilder s = new StringBuilder();
-                        addDelimited(s,
-                                String.format(onErrorFormat, m.value().getThrowable().getMessage()));
-                        addDelimited(s, m.message());
-                        addMemory(s);
-                        Logging.log(getLogger(), s.toString(), onErrorLevel, m.value()
-                                .getThrowable());
-                    } else if (m.value().isOnNext() && logOnNext) {
-                        StringBuilder s = new StringBuilder();
-                        if (onNextFormat.length() > 0)
-                            s.append(String.format(onNextFormat,
-                                    String.valueOf(valueFunction.call(m.value().getValue()))));
-                        addDelimited(s, m.message());
-                        addMemory(s);
-                        addStackTrace(s);
-                        Logging.log(getLogger(), s.toString(), onNextLevel, null);
-                    }
-                }
+            /**
+             * Shows the timings of each subscription: the time from subscribe
+             * to the first item (<tt>firstItem</tt>) and the time to the
+             * terminal event (<tt>active</tt>) on the <i>onCompleted</i> and
+             * <i>onError</i> lines, and additionally the time from the terminal
+             * event to unsubscribe (<tt>teardown</tt>) and the 99th
+             * percentiles of these timings across all subscriptions to the
+             * operator on the unsubscribe line.
+             * 
+             * @return builder
+             */
+            public Builder<T> showLifecycle() {
+                this.showLifecycle = true;
+                return this;
+            }
 
-                private void addStackTrace(StringBuilder s) {
-                    if (logStackTrace) {
-                        for (StackTraceElement elem : Thread.currentThread().getStackTrace()) {
-                            s.append("\n    ");
-                            s.append(elem);
-                        }
-                    }
-                }
+            /**
+             * Publishes the counts of items, errors, completions and active
+             * subscriptions, the rate and (if {@link #showLatency()} is used)
+             * the latency percentiles of this operator to the
+             * {@link MetricsRegistry} and JMX under the given name. The
+             * metrics are recorded even when the logging levels are disabled.
+             * 
+             * @param name
+             *            name to register the metrics under
+             * @return builder
+             */
+            public Builder<T> register(String name) {
+                this.metricsName = name;
+                return this;
+            }
+
+            /**
+             * Logs a summary line for each subscription every
+             * <tt>period</tt> on the given {@link Scheduler}, whether or not
+             * items arrive, for example
+             * <tt>summary, count=1200, delta=200, rate=20.000, minGap=1.2us, maxGap=3.1ms</tt>
+             * (or <tt>idle</tt> instead of the gaps if no items arrived and
+             * no gaps if only the first item arrived). The
+             * memory usage is included if {@link #showMemory()} is used. The
+             * line is logged at the <i>onNext</i> level and the emitting
+             * thread only updates counters, so combined with
+             * <tt>onNext(false)</tt> there is no logging work per item.
+             * 
+             * @param period
+             *            time between summaries
+             * @param unit
+             *            unit of period
+             * @param scheduler
+             *            scheduler to build and log the summaries on
+             * @return builder
+             */
+            public Builder<T> summaryEvery(long period, TimeUnit unit, Scheduler scheduler) {
+                if (period <= 0)
+                    throw new IllegalArgumentException("period must be positive");
+                this.summaryPeriodMs = unit.toMillis(period);
+                this.summaryScheduler = scheduler;
+                return this;
+            }
+
+            /**
+             * As {@link #summaryEvery(long, TimeUnit, Scheduler)} with an
+             * RxJava 3 scheduler (requires RxJava 3 on the classpath).
+             * 
+             * @param period
+             *            time between summaries
+             * @param unit
+             *            unit of period
+             * @param scheduler
+             *            RxJava 3 scheduler to build and log the summaries on
+             * @return builder
+             */
+            public Builder<T> summaryEvery(long period, TimeUnit unit,
+                    io.reactivex.rxjava3.core.Scheduler scheduler) {
+                return summaryEvery(period, unit, Rx3Logging.scheduler(scheduler));
+            }
+
+            /**
+             * Shows the backpressure of the subscription on each logged line:
+             * the total requested by downstream, the number of items
+             * delivered and the outstanding demand (for example
+             * <tt>requested=128, delivered=100, outstanding=28</tt>, or
+             * <tt>requested=unbounded, delivered=100</tt>). A
+             * <tt>outstanding</tt> of zero while upstream has items to emit
+             * indicates a slow consumer. The producer is only wrapped to
+             * observe requests when this option is used.
+             * 
+             * @return builder
+             */
+            public Builder<T> showRequests() {
+                this.showRequests = true;
+                return this;
+            }
+
+            /**
+             * Logs a warning (with the count so far and the last value) when
+             * a subscribed stream that has not terminated emits no items for
+             * the given duration, and logs at INFO when items resume. All
+             * streams watched on the same {@link Scheduler} share one timer
+             * wheel ticking every 100ms (only while streams are watched) and
+             * the emitting thread only increments a count, so watching many
+             * streams (like the inner streams of a <tt>flatMap</tt>) is cheap.
+             * A stall is reported between 1 and 1.5 times the duration after
+             * the last item. The last value is rendered as set by
+             * {@link #maxValueLength(int)} and
+             * {@link #valueRenderer(ValueRenderer)}.
+             * 
+             * @param duration
+             *            maximum time between items before warning
+             * @param unit
+             *            unit of duration
+             * @param scheduler
+             *            scheduler to run the timer wheel on
+             * @return builder
+             */
+            public Builder<T> warnIfIdle(long duration, TimeUnit unit, Scheduler scheduler) {
+                if (duration <= 0)
+                    throw new IllegalArgumentException("duration must be positive");
+                this.idleDurationMs = unit.toMillis(duration);
+                this.idleScheduler = scheduler;
+                return this;
+            }
+
+            /**
+             * As {@link #warnIfIdle(long, TimeUnit, Scheduler)} with an RxJava
+             * 3 scheduler (requires RxJava 3 on the classpath). Streams
+             * watched on the same RxJava 3 scheduler share one timer wheel.
+             * 
+             * @param duration
+             *            maximum time between items before warning
+             * @param unit
+             *            unit of duration
+             * @param scheduler
+             *            RxJava 3 scheduler to run the timer wheel on
+             * @return builder
+             */
+            public Builder<T> warnIfIdle(long duration, TimeUnit unit,
+                    io.reactivex.rxjava3.core.Scheduler scheduler) {
+                return warnIfIdle(duration, unit, Rx3Logging.scheduler(scheduler));
+            }
+
+            /**
+             * Keeps the last <tt>capacity</tt> notifications (time, kind,
+             * value and thread id) of each subscription in a preallocated
+             * ring buffer and logs them as one ERROR event just before the
+             * <i>onError</i> line. Nothing is rendered unless the stream
+             * fails so this gives the context of a failure at little cost
+             * when <i>onNext</i> logging is off. The notifications are
+             * recorded whatever the logging levels and before
+             * {@link #every(int)}, {@link #when(Func1)} and other filters are
+             * applied.
+             * 
+             * @param capacity
+             *            number of notifications kept per subscription
+             * @return builder
+             */
+            public Builder<T> flightRecorder(int capacity) {
+                return flightRecorder(FlightRecorder.create(capacity));
+            }
+
+            /**
+             * As {@link #flightRecorder(int)} but records to the given
+             * recorder, which can also dump the notifications of the live
+             * subscriptions on demand (see {@link FlightRecorder#dump()}) and
+             * may be shared between operators.
+             * 
+             * @param recorder
+             *            the recorder
+             * @return builder
+             */
+            public Builder<T> flightRecorder(FlightRecorder recorder) {
+                this.flightRecorder = recorder;
+                return this;
+            }
+
+            /**
+             * Writes every notification (and subscription and
+             * unsubscription) as a binary record to the given memory-mapped
+             * journal instead of rendering it, recording the hash code of
+             * each <i>onNext</i> value. The records are written whatever the
+             * logging levels and before {@link #every(int)},
+             * {@link #when(Func1)} and other filters are applied, so
+             * <i>onNext</i> logging would usually be turned off. Use
+             * {@link JournalDecoder} to read the journal. Each call to
+             * {@link #log()} registers a new operator with the journal under
+             * the logger name.
+             * 
+             * @param journal
+             *            the journal (may be shared between operators)
+             * @return builder
+             */
+            public Builder<T> journal(Journal journal) {
+                return journal(journal, null);
+            }
+
+            /**
+             * As {@link #journal(Journal)} but records each <i>onNext</i>
+             * value serialized by the given function (truncated to 65535
+             * bytes) instead of its hash code.
+             * 
+             * @param journal
+             *            the journal (may be shared between operators)
+             * @param serializer
+             *            serializes the values, null to record hash codes
+             * @return builder
+             */
+            public Builder<T> journal(Journal journal, Func1<? super T, byte[]> serializer) {
+                this.journal = journal;
+                this.journalSerializer = serializer;
+                return this;
+            }
+
+            /**
+             * Logs typed values as the key/value pairs of SLF4J 2 events
+             * (<tt>LoggingEventBuilder.addKeyValue</tt>) rather than rendering
+             * them into the message, so that structured (for example JSON)
+             * appenders receive them as fields without parsing. Counts and
+             * rates (under their labels), the <i>onNext</i> value (as
+             * <tt>value</tt>, without the format or prefix), the number of
+             * suppressed lines and the memory figures (in bytes) become
+             * fields. Everything else stays in the message text.
+             * 
+             * <p>
+             * Falls back to text if the SLF4J API at runtime is 1.7 or if the
+             * logging cannot be fused (see {@link #to(Func1)}).
+             * 
+             * @return builder
+             */
+            public Builder<T> structured() {
+                this.structured = true;
+                return this;
+            }
+
+            /**
+             * Logs only the first of identical lines (including
+             * <i>onError</i> lines with the same error class, message and top
+             * stack frames) logged by any subscription to this operator within
+             * the window, and when the window closes logs the line again with
+             * the number of repeats (<tt>repeated=N, window=5.0s</tt>). Useful
+             * when a stream is resubscribed by <tt>retry</tt> or
+             * <tt>repeat</tt>. Windows are closed on
+             * {@link Schedulers#computation()}.
+             * 
+             * @param window
+             *            time from the first occurrence of a line during which
+             *            repeats are not logged
+             * @param unit
+             *            unit of window
+             * @return builder
+             */
+            public Builder<T> dedupe(long window, TimeUnit unit) {
+                return dedupe(window, unit, Schedulers.computation());
+            }
+
+            /**
+             * As {@link #dedupe(long, TimeUnit)} but closes the windows on
+             * the given {@link Scheduler}. The repeat counts are logged the
+             * same way as the first occurrence (on the worker of
+             * {@link #async(int, Scheduler)} if requested).
+             * 
+             * @param window
+             *            time from the first occurrence of a line during which
+             *            repeats are not logged
+             * @param unit
+             *            unit of window
+             * @param scheduler
+             *            scheduler to close windows on
+             * @return builder
+             */
+            public Builder<T> dedupe(long window, TimeUnit unit, Scheduler scheduler) {
+                if (window <= 0)
+                    throw new IllegalArgumentException("window must be positive");
+                this.dedupeWindowMs = unit.toMillis(window);
+                this.dedupeScheduler = scheduler;
+                return this;
+            }
+
+            /**
+             * As {@link #dedupe(long, TimeUnit, Scheduler)} with an RxJava 3
+             * scheduler (requires RxJava 3 on the classpath).
+             * 
+             * @param window
+             *            time from the first occurrence of a line during which
+             *            repeats are not logged
+             * @param unit
+             *            unit of window
+             * @param scheduler
+             *            RxJava 3 scheduler to close windows on
+             * @return builder
+             */
+            public Builder<T> dedupe(long window, TimeUnit unit,
+                    io.reactivex.rxjava3.core.Scheduler scheduler) {
+                return dedupe(window, unit, Rx3Logging.scheduler(scheduler));
+            }
+
+            /**
+             * Sets the source of time for the time based steps (like
+             * {@link #every(long, TimeUnit)} and
+             * {@link #showRateSince(String, long)}) and for the level checks
+             * requested by {@link #checkLevelEvery(long, TimeUnit)}. The
+             * default is {@link Clock#system()}.
+             * 
+             * @param clock
+             *            the clock
+             * @return this
+             */
+            public Builder<T> clock(Clock clock) {
+                this.clock = clock;
+                return this;
+            }
+
+            /**
+             * By default whether the <i>onNext</i>, <i>onError</i> and
+             * <i>onCompleted</i> levels are enabled on the {@link Logger} is
+             * checked once when a subscription is made. If none are enabled
+             * then notifications are passed straight through without any
+             * logging work (so counts are not incremented either) and if some
+             * are disabled then no messages are built for those
+             * notifications. This method requests that the levels are checked
+             * again at most every <tt>duration</tt> so that changes to
+             * logging levels at runtime are picked up by long-lived
+             * subscriptions.
+             * 
+             * @param duration
+             *            the interval between checks
+             * @param unit
+             *            the unit of the interval
+             * @return this
+             */
+            public Builder<T> checkLevelEvery(long duration, TimeUnit unit) {
+                this.checkLevelIntervalMs = unit.toMillis(duration);
+                return this;
+            }
+
+            /**
+             * Requests that log lines are rendered on the emitting thread but
+             * passed to the {@link Logger} in batches on a worker of the given
+             * {@link Scheduler}, so that slow appenders do not hold up the
+             * stream. Up to <tt>bufferSize</tt> lines are buffered for each
+             * subscription and when the buffer is full the oldest lines are
+             * dropped (see {@link Overflow#DROP_OLDEST}).
+             * 
+             * @param bufferSize
+             *            maximum number of lines buffered per subscription
+             * @param scheduler
+             *            scheduler to log on
+             * @return this
+             */
+            public Builder<T> async(int bufferSize, Scheduler scheduler) {
+                return async(bufferSize, scheduler, Overflow.DROP_OLDEST);
+            }
+
+            /**
+             * As {@link #async(int, Scheduler)} with an RxJava 3 scheduler
+             * (requires RxJava 3 on the classpath).
+             * 
+             * @param bufferSize
+             *            maximum number of lines buffered per subscription
+             * @param scheduler
+             *            RxJava 3 scheduler to log on
+             * @return this
+             */
+            public Builder<T> async(int bufferSize, io.reactivex.rxjava3.core.Scheduler scheduler) {
+                return async(bufferSize, scheduler, Overflow.DROP_OLDEST);
+            }
+
+            /**
+             * Requests that log lines are rendered on the emitting thread but
+             * passed to the {@link Logger} in batches on a worker of the given
+             * {@link Scheduler}, so that slow appenders do not hold up the
+             * stream. Up to <tt>bufferSize</tt> lines are buffered for each
+             * subscription. Buffered lines are still logged after the stream
+             * terminates or is unsubscribed.
+             * 
+             * @param bufferSize
+             *            maximum number of lines buffered per subscription
+             * @param scheduler
+             *            scheduler to log on
+             * @param overflow
+             *            what to do when the buffer is full
+             * @return this
+             */
+            public Builder<T> async(int bufferSize, Scheduler scheduler, Overflow overflow) {
+                if (bufferSize <= 0)
+                    throw new IllegalArgumentException("bufferSize must be positive");
+                this.asyncBufferSize = bufferSize;
+                this.asyncScheduler = scheduler;
+                this.asyncOverflow = overflow;
+                return this;
+            }
+
+            /**
+             * As {@link #async(int, Scheduler, Overflow)} with an RxJava 3
+             * scheduler (requires RxJava 3 on the classpath).
+             * 
+             * @param bufferSize
+             *            maximum number of lines buffered per subscription
+             * @param scheduler
+             *            RxJava 3 scheduler to log on
+             * @param overflow
+             *            what to do when the buffer is full
+             * @return this
+             */
+            public Builder<T> async(int bufferSize, io.reactivex.rxjava3.core.Scheduler scheduler,
+                    Overflow overflow) {
+                return async(bufferSize, Rx3Logging.scheduler(scheduler), overflow);
+            }
+
+            public OperatorLogging<T> log() {
+                return new OperatorLogging<T>(parameters());
+            }
 
-                private void addMemory(StringBuilder s) {
-                    if (logMemory)
-                        addDelimited(s, memoryUsage());
+            private Parameters<T> parameters() {
+                // resolve the logger once only rather than for every event
+                final Logger logger = getLogger();
+                final Renderer<T> renderer = new Renderer<T>(logger, onCompleteMessage, logOnNext,
+                        logOnError, onNextFormat, onErrorFormat, onNextLevel, onErrorLevel,
+                        onCompletedLevel, valueFunction, logStackTrace, memoryProbe,
+                        structured && KeyValues.isSupported(), valueRenderer, maxValueLength);
+                final Scheduler scheduler = asyncScheduler;
+                final int bufferSize = asyncBufferSize;
+                final Overflow overflow = asyncOverflow;
+                final Func0<Dispatcher> base;
+                if (scheduler == null)
+                    base = () -> Dispatcher.SYNC;
+                else
+                    base = () -> new AsyncDispatcher(logger, bufferSize, scheduler, overflow);
+                final Func0<Dispatcher> dispatchers;
+                if (dedupeScheduler == null)
+                    dispatchers = base;
+                else {
+                    // shared by all subscriptions so that resubscriptions are
+                    // deduplicated
+                    final Dedupe dedupe = new Dedupe(dedupeWindowMs, dedupeScheduler);
+                    dispatchers = () -> dedupe.wrap(base.call());
                 }
+                List<Func1<Observable<Message<T>>, Observable<Message<T>>>> list = new ArrayList<Func1<Observable<Message<T>>, Observable<Message<T>>>>(
+                        transformations);
+                final List<Stage<T>> fused = fusable ? new ArrayList<Stage<T>>(stages) : null;
+                if (limiter != null) {
+                    Stage<T> limit = limitStage(limiter);
+                    list.add(transformation(limit));
+                    if (fused != null)
+                        fused.add(limit);
+                }
+                return new Parameters<T>(logger, subscribedMessage,
+                        unsubscribedMessage, subscribedLevel, unsubscribedLevel, list, fused,
+                        renderer, dispatchers, checkLevelIntervalMs, clock, latency,
+                        showLifecycle ? new Lifecycle.Stats() : null,
+                        metricsName == null ? null : MetricsRegistry.register(metricsName, clock),
+                        summaryScheduler == null ? null
+                                : new Summary.Spec(summaryPeriodMs, summaryScheduler, onNextLevel,
+                                        memoryProbe),
+                        showRequests, showGaps,
+                        idleScheduler == null ? null : IdleWatchdog.of(idleScheduler),
+                        idleDurationMs, flightRecorder,
+                        journal == null ? null
+                                : journal.<T> register(logger.getName(), journalSerializer));
+            }
 
-            };
+            /**
+             * Returns a transformer that logs an RxJava 3 <tt>Flowable</tt>
+             * or <tt>Observable</tt> (via <tt>compose</tt>) as specified by
+             * this builder. Requires RxJava 3 on the classpath and cannot be
+             * used with {@link #to(Func1)}, which transforms RxJava 1
+             * streams.
+             *
+             * @return RxJava 3 transformer
+             */
+            public Rx3Logging<T> rx3() {
+                if (!fusable)
+                    throw new IllegalStateException("to(...) cannot be used with RxJava 3");
+                return new Rx3Logging<T>(parameters());
+            }
+
+            private Stage<T> limitStage(final RateLimiter limiter) {
+                return fields -> (kind, value, error, message) -> {
+                    // disabled levels do not use the budget
+                    if (message == null)
+                        return true;
+                    else if (limiter.tryAcquire()) {
+                        long n = limiter.drainSuppressed();
+                        if (n > 0)
+                            addField(message, fields, "suppressed", n);
+                        return true;
+                    } else
+                        return false;
+                };
+            }
+
+            private Builder<T> stage(Stage<T> stage) {
+                stages.add(stage);
+                transformations.add(transformation(stage));
+                return this;
+            }
+
+            /**
+             * Adapts a {@link Stage} to a transformation of the materialized
+             * message stream for use when the stages cannot be fused.
+             */
+            private static <T> Func1<Observable<Message<T>>, Observable<Message<T>>> transformation(
+                    final Stage<T> stage) {
+                return observable -> Observable.defer(() -> {
+                    final Step<T> step = stage.create(null);
+                    return observable.map(m -> {
+                        Notification<T> n = m.value();
+                        StringBuilder s = new StringBuilder(m.message());
+                        if (step.call(n.getKind(), n.getValue(), n.getThrowable(), s))
+                            return new Message<T>(n, s.toString());
+                        else
+                            return null;
+                    }).filter(m -> m != null);
+                });
+            }
+
+            private Builder<T> source() {
+                return name(Callers.callingClassName());
+            }
         }
     }
 
@@ -641,25 +1579,63 @@ public class Logging {
             s.append(", ");
     }
 
-    private static void addDelimited(StringBuilder b, String s) {
+    private static void addRate(StringBuilder b, KeyValues fields, String label, double rate) {
+        if (fields != null) {
+            fields.add(label, rate);
+        } else {
+            delimiter(b);
+            b.append(label).append('=');
+            Decimals.append(b, rate, 3);
+        }
+    }
+
+    /**
+     * Spreads the bits of the hash code of the given object (the MurmurHash3
+     * finalizer) so that similar keys are sampled independently.
+     */
+    private static int mix(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static void addDelimited(StringBuilder b, CharSequence s) {
         if (s.length() > 0) {
             delimiter(b);
             b.append(s);
         }
     }
 
-    static String memoryUsage() {
-        StringBuilder s = new StringBuilder();
-        Runtime r = Runtime.getRuntime();
-        long mem = r.totalMemory() - r.freeMemory();
-        s.append("usedMem=");
-        s.append(new DecimalFormat("0").format(mem / 1000000.0));
-        s.append("MB, percentMax=");
-        s.append(new DecimalFormat("0.0").format((double) mem / r.maxMemory() * 100));
-        s.append(", max=");
-        s.append(new DecimalFormat("0").format(r.maxMemory() / 1000000.0));
-        s.append("MB");
-        return s.toString();
+    static void addDelimited(StringBuilder b, String label, long value) {
+        delimiter(b);
+        b.append(label).append('=').append(value);
+    }
+
+    static void addDelimited(StringBuilder b, String label, double value) {
+        delimiter(b);
+        b.append(label).append('=').append(value);
+    }
+
+    /**
+     * Adds a typed field to the structured event if there is one otherwise
+     * appends it to the message as text.
+     */
+    static void addField(StringBuilder b, KeyValues fields, String label, long value) {
+        if (fields == null)
+            addDelimited(b, label, value);
+        else
+            fields.add(label, value);
+    }
+
+    static void addField(StringBuilder b, KeyValues fields, String label, double value) {
+        if (fields == null)
+            addDelimited(b, label, value);
+        else
+            fields.add(label, value);
     }
 
     /**
@@ -686,7 +1662,10 @@ public class Logging {
 
     /**
      * Returns a builder for which the {@link Logger} is based on the current
-     * class (using {@link LoggerFactory#getLogger(Class)}.
+     * class (using {@link LoggerFactory#getLogger(Class)}. Finding the calling
+     * class requires walking the stack so if you are creating many operators
+     * (for instance inside a <tt>flatMap</tt>) prefer
+     * {@link #logger(Class)}.
      * 
      * @return builder
      */
@@ -728,6 +1707,28 @@ public class Logging {
         return Parameters.<T> builder().logger(cls);
     }
 
+    static boolean isEnabled(Logger logger, Level level) {
+        if (level == Level.INFO)
+            return logger.isInfoEnabled();
+        else if (level == Level.DEBUG)
+            return logger.isDebugEnabled();
+        else if (level == Level.WARN)
+            return logger.isWarnEnabled();
+        else if (level == Level.TRACE)
+            return logger.isTraceEnabled();
+        else if (level == Level.ERROR)
+            return logger.isErrorEnabled();
+        else
+            return false;
+    }
+
+    static void log(Logger logger, String msg, Level level, Throwable t, KeyValues fields) {
+        if (fields == null || fields.isEmpty())
+            log(logger, msg, level, t);
+        else
+            fields.log(logger, msg, level, t);
+    }
+
     static void log(Logger logger, String msg, Level level, Throwable t) {
 
         if (t == null) {
@@ -0,0 +1,143 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the memory usage of the JVM for {@link Logging.Parameters.Builder#showMemory()}
+ * and {@link Log.Builder#memory()}. Reading the memory figures and formatting
+ * them is relatively expensive compared to logging a line so the rendered text
+ * is cached and only refreshed when it is older than the refresh interval.
+ * A probe is thread-safe and may be shared between operators.
+ */
+final class MemoryProbe {
+
+    static final long DEFAULT_REFRESH_INTERVAL_MS = 100;
+
+    /**
+     * Shared probe used by <tt>showMemory()</tt> and <tt>Log.memory()</tt>.
+     */
+    static final MemoryProbe DEFAULT = new MemoryProbe(DEFAULT_REFRESH_INTERVAL_MS, false);
+
+    private static final double MB = 1000000.0;
+
+    private final long refreshIntervalMs;
+    private final boolean detailed;
+
+    // replaced as a whole so readers always see a consistent pair, null
+    // until first read
+    private volatile Snapshot snapshot;
+
+    MemoryProbe(long refreshIntervalMs, boolean detailed) {
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.detailed = detailed;
+    }
+
+    static MemoryProbe create(long refreshInterval, TimeUnit unit, boolean detailed) {
+        if (refreshInterval < 0)
+            throw new IllegalArgumentException("refreshInterval cannot be negative");
+        return new MemoryProbe(unit.toMillis(refreshInterval), detailed);
+    }
+
+    /**
+     * Returns the memory usage text, re-reading the figures if the cached
+     * text is older than the refresh interval.
+     *
+     * @return memory usage text
+     */
+    String text() {
+        return snapshot().text;
+    }
+
+    /**
+     * Adds the memory figures (in bytes) to the fields of a structured event,
+     * re-reading them if they are older than the refresh interval.
+     *
+     * @param fields
+     *            fields to add to
+     */
+    void addTo(KeyValues fields) {
+        Snapshot s = snapshot();
+        for (int i = 0; i < s.keys.length; i++) {
+            fields.add(s.keys[i], s.values[i]);
+        }
+    }
+
+    private Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        Snapshot s = snapshot;
+        if (s == null || now - s.time >= refreshIntervalMs) {
+            // concurrent refreshes are harmless, the last one wins
+            s = read(now);
+            snapshot = s;
+        }
+        return s;
+    }
+
+    private Snapshot read(long now) {
+        StringBuilder b = new StringBuilder(detailed ? 160 : 64);
+        if (detailed) {
+            MemoryMXBean bean = ManagementFactory.getMemoryMXBean();
+            MemoryUsage heap = bean.getHeapMemoryUsage();
+            MemoryUsage nonHeap = bean.getNonHeapMemoryUsage();
+            appendMb(b, "heapUsed=", heap.getUsed());
+            appendMb(b, ", heapCommitted=", heap.getCommitted());
+            appendMb(b, ", heapMax=", heap.getMax());
+            appendMb(b, ", nonHeapUsed=", nonHeap.getUsed());
+            long gcCount = 0;
+            long gcTimeMs = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, gc.getCollectionCount());
+                gcTimeMs += Math.max(0, gc.getCollectionTime());
+            }
+            b.append(", gcCount=").append(gcCount);
+            b.append(", gcTimeMs=").append(gcTimeMs);
+            return new Snapshot(now, b.toString(),
+                    new String[] { "heapUsed", "heapCommitted", "heapMax", "nonHeapUsed",
+                            "gcCount", "gcTimeMs" },
+                    new Object[] { heap.getUsed(), heap.getCommitted(), heap.getMax(),
+                            nonHeap.getUsed(), gcCount, gcTimeMs });
+        } else {
+            Runtime r = Runtime.getRuntime();
+            long mem = r.totalMemory() - r.freeMemory();
+            long max = r.maxMemory();
+            double percentMax = (double) mem / max * 100;
+            appendMb(b, "usedMem=", mem);
+            b.append(", percentMax=");
+            Decimals.append(b, percentMax, 1);
+            appendMb(b, ", max=", max);
+            return new Snapshot(now, b.toString(),
+                    new String[] { "usedMem", "percentMax", "maxMem" },
+                    new Object[] { mem, percentMax, max });
+        }
+    }
+
+    private static void appendMb(StringBuilder b, String label, long bytes) {
+        b.append(label);
+        if (bytes < 0) {
+            // undefined (for example heapMax when there is no limit)
+            b.append("?");
+        } else {
+            Decimals.append(b, bytes / MB, 0);
+        }
+        b.append("MB");
+    }
+
+    private static final class Snapshot {
+        final long time;
+        final String text;
+        // the figures for structured events, boxed once per refresh
+        final String[] keys;
+        final Object[] values;
+
+        Snapshot(long time, String text, String[] keys, Object[] values) {
+            this.time = time;
+            this.text = text;
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process registry of the metrics of logging operators created with
+ * {@link Logging.Parameters.Builder#register(String)}. Operators registered
+ * with the same name share their metrics. Each name is also published to the
+ * platform MBean server as an {@link OperatorMetricsMXBean}. Names stay
+ * registered until {@link #unregister(String)} is called.
+ */
+public final class MetricsRegistry {
+
+    static final String DOMAIN = "com.github.davidmoten.rx.slf4j";
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final ConcurrentMap<String, OperatorMetrics> METRICS = new ConcurrentHashMap<String, OperatorMetrics>();
+
+    private MetricsRegistry() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the metrics registered under the given name or null if none.
+     *
+     * @param name
+     *            the registered name
+     * @return metrics or null
+     */
+    public static OperatorMetricsMXBean get(String name) {
+        return METRICS.get(name);
+    }
+
+    /**
+     * Returns the registered names.
+     *
+     * @return names
+     */
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(METRICS.keySet());
+    }
+
+    /**
+     * Removes the metrics registered under the given name from the registry
+     * and from JMX. Operators already built with that name keep recording to
+     * the removed metrics, operators built afterwards register new ones.
+     *
+     * @param name
+     *            the registered name
+     * @return true if metrics were registered under the name
+     */
+    public static boolean unregister(String name) {
+        OperatorMetrics m = METRICS.remove(name);
+        if (m == null)
+            return false;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(name);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (JMException | SecurityException e) {
+            LOG.warn("could not remove logging metrics " + name + " from JMX: "
+                    + e.getMessage());
+        }
+        return true;
+    }
+
+    static OperatorMetrics register(String name, Clock clock) {
+        return METRICS.computeIfAbsent(name, n -> {
+            OperatorMetrics m = new OperatorMetrics(n, clock);
+            publish(m);
+            return m;
+        });
+    }
+
+    static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=OperatorMetrics,name=" + ObjectName.quote(name));
+    }
+
+    private static void publish(OperatorMetrics m) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(m, OperatorMetricsMXBean.class, true),
+                    objectName(m.getName()));
+        } catch (JMException | SecurityException e) {
+            // the metrics are still available in-process
+            LOG.warn("could not publish logging metrics " + m.getName() + " to JMX: "
+                    + e.getMessage());
+        }
+    }
+}
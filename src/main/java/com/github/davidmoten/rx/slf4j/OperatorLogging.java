@@ -1,6 +1,6 @@
 package com.github.davidmoten.rx.slf4j;
 
-import static com.github.davidmoten.rx.slf4j.Logging.log;
+import static com.github.davidmoten.rx.slf4j.Logging.isEnabled;
 
 import org.slf4j.Logger;
 
@@ -9,11 +9,14 @@ import com.github.davidmoten.rx.slf4j.Logging.Parameters.Message;
 import com.github.davidmoten.rx.slf4j.subjects.PublishSubjectSingleSubscriber;
 
 import rx.Notification;
+import rx.Notification.Kind;
 import rx.Observable;
 import rx.Observable.Operator;
+import rx.Producer;
 import rx.Subscriber;
 import rx.functions.Action0;
 import rx.functions.Func1;
+import rx.subscriptions.Subscriptions;
 
 public class OperatorLogging<T> implements Operator<T, T> {
 
@@ -25,21 +28,56 @@ public class OperatorLogging<T> implements Operator<T, T> {
 
     @Override
     public Subscriber<? super T> call(Subscriber<? super T> child) {
+        // null if the lifecycle is not shown
+        Lifecycle lifecycle = parameters.getLifecycleStats() == null ? null
+                : new Lifecycle(parameters.getLifecycleStats());
+        OperatorMetrics metrics = parameters.getMetrics();
+        if (metrics == null && !logsIndependently(parameters)
+                && parameters.getCheckLevelIntervalMs() <= 0 && !anyEnabled(parameters)) {
+            // nothing would ever be logged so don't do any work per item
+            return createPassThroughSubscriber(child, lifecycle);
+        }
+        if (parameters.getStages() != null) {
+            SubscriptionLog<T> log = new SubscriptionLog<T>(parameters);
+            child.add(Subscriptions.create(log::close));
+            return new FusedSubscriber<T>(child, log);
+        }
+        if (metrics != null) {
+            metrics.onSubscribe();
+            child.add(Subscriptions.create(metrics::onUnsubscribe));
+        }
+        // null if requests are not shown
+        Demand demand = parameters.isShowRequests() ? new Demand() : null;
+        // null if gaps are not shown
+        Gaps gaps = parameters.isShowGaps() ? new Gaps() : null;
+
         // create the subject and an observable from the subject that
         // materializes the notifications from the subject
         PublishSubjectSingleSubscriber<T> subject = PublishSubjectSingleSubscriber.create();
 
+        // null if latency is not shown
+        LatencyReport latency = parameters.getLatency();
+        LatencyHistogram histogram = latency == null ? null : new LatencyHistogram();
+
         // create the logging observable
-        Observable<Message<T>> observable = createObservableFromSubject(subject);
+        Observable<Message<T>> observable = createObservableFromSubject(subject, gaps, latency,
+                histogram, lifecycle, demand);
 
         // apply all the logging stream transformations
         for (Func1<Observable<Message<T>>, Observable<Message<T>>> transformation : parameters
-                .getTransformations()) {
+                .getStepTransformations()) {
             observable = transformation.call(observable);
         }
 
-        Action0 unsubscriptionLogger = createUnsubscriptionAction(parameters);
-        Action0 subscriptionLogger = createSubscriptionAction(parameters);
+        // every line of the subscription goes through the same dispatcher so
+        // that an asynchronous dispatcher keeps them in order
+        Dispatcher dispatcher = parameters.createDispatcher();
+        observable = parameters.render(observable, dispatcher);
+
+        // closes the dispatcher
+        Action0 unsubscriptionLogger = createUnsubscriptionAction(parameters, dispatcher,
+                lifecycle);
+        Action0 subscriptionLogger = createSubscriptionAction(parameters, dispatcher);
         observable = observable
                 // add subscription action
                 .doOnSubscribe(subscriptionLogger)
@@ -47,7 +85,12 @@ public class OperatorLogging<T> implements Operator<T, T> {
                 .doOnUnsubscribe(unsubscriptionLogger);
 
         // create parent subscriber
-        Subscriber<T> parent = createParentSubscriber(subject, child);
+        Summary summary = startSummary(child, dispatcher);
+        IdleWatchdog.Watch watch = startWatch(child, dispatcher);
+        FlightRecorder.Recording recording = startRecording(child, dispatcher);
+        Journal.Writer<T> journal = startJournal(child);
+        Subscriber<T> parent = createParentSubscriber(subject, child, histogram, lifecycle,
+                metrics, summary, demand, gaps, watch, recording, journal);
 
         // create subscriber for the logging observable
         Subscriber<Message<T>> logSubscriber = createErrorLoggingSubscriber(parameters.getLogger());
@@ -61,6 +104,163 @@ public class OperatorLogging<T> implements Operator<T, T> {
         return parent;
     }
 
+    /**
+     * Returns true if the operator logs lines that do not depend on the
+     * <i>onNext</i>, <i>onError</i> and <i>onCompleted</i> levels (so it can't
+     * just pass notifications through when those levels are disabled).
+     */
+    private static boolean logsIndependently(Parameters<?> p) {
+        return p.getSummary() != null || p.getIdleWatchdog() != null
+                || p.getFlightRecorder() != null || p.getJournal() != null;
+    }
+
+    private static boolean anyEnabled(Parameters<?> p) {
+        Logger logger = p.getLogger();
+        Renderer<?> r = p.getRenderer();
+        return isEnabled(logger, r.onNextLevel()) || isEnabled(logger, r.onErrorLevel())
+                || isEnabled(logger, r.onCompletedLevel());
+    }
+
+    private Subscriber<T> createPassThroughSubscriber(final Subscriber<? super T> child,
+            final Lifecycle lifecycle) {
+        createSubscriptionAction(parameters, Dispatcher.SYNC).call();
+        child.add(Subscriptions.create(
+                createUnsubscriptionAction(parameters, Dispatcher.SYNC, lifecycle)));
+        return new Subscriber<T>(child) {
+
+            @Override
+            public void onCompleted() {
+                if (lifecycle != null)
+                    lifecycle.onTerminate();
+                child.onCompleted();
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                if (lifecycle != null)
+                    lifecycle.onTerminate();
+                child.onError(e);
+            }
+
+            @Override
+            public void onNext(T t) {
+                if (lifecycle != null)
+                    lifecycle.onNext();
+                child.onNext(t);
+            }
+        };
+    }
+
+    private Summary startSummary(Subscriber<? super T> child, Dispatcher dispatcher) {
+        Summary.Spec spec = parameters.getSummary();
+        if (spec == null) {
+            return null;
+        } else {
+            Summary summary = new Summary(spec, parameters.getLogger(), dispatcher);
+            child.add(summary.start());
+            return summary;
+        }
+    }
+
+    private IdleWatchdog.Watch startWatch(Subscriber<? super T> child, Dispatcher dispatcher) {
+        IdleWatchdog watchdog = parameters.getIdleWatchdog();
+        if (watchdog == null) {
+            return null;
+        } else {
+            IdleWatchdog.Watch watch = watchdog.watch(parameters.getLogger(), dispatcher,
+                    parameters.getRenderer(), parameters.getIdleDurationMs());
+            child.add(Subscriptions.create(watch::cancel));
+            return watch;
+        }
+    }
+
+    private FlightRecorder.Recording startRecording(Subscriber<? super T> child,
+            Dispatcher dispatcher) {
+        FlightRecorder recorder = parameters.getFlightRecorder();
+        if (recorder == null) {
+            return null;
+        } else {
+            FlightRecorder.Recording recording = recorder.start(parameters.getLogger(),
+                    dispatcher, parameters.getRenderer(), parameters.getClock());
+            child.add(Subscriptions.create(recording::close));
+            return recording;
+        }
+    }
+
+    private Journal.Writer<T> startJournal(Subscriber<? super T> child) {
+        Journal.Spec<T> spec = parameters.getJournal();
+        if (spec == null) {
+            return null;
+        } else {
+            Journal.Writer<T> journal = spec.start();
+            child.add(Subscriptions.create(journal::close));
+            return journal;
+        }
+    }
+
+    /**
+     * Passes notifications to the fused {@link SubscriptionLog} and on to the
+     * child.
+     */
+    private static final class FusedSubscriber<T> extends Subscriber<T> {
+
+        private final Subscriber<? super T> child;
+        private final SubscriptionLog<T> log;
+
+        FusedSubscriber(Subscriber<? super T> child, SubscriptionLog<T> log) {
+            super(child);
+            this.child = child;
+            this.log = log;
+        }
+
+        @Override
+        public void onCompleted() {
+            log.onCompleted();
+            child.onCompleted();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            log.onError(e);
+            child.onError(e);
+        }
+
+        @Override
+        public void onNext(T t) {
+            log.onNext(t);
+            if (log.isTimed()) {
+                long start = System.nanoTime();
+                child.onNext(t);
+                log.recordLatency(System.nanoTime() - start);
+            } else {
+                child.onNext(t);
+            }
+        }
+
+        @Override
+        public void setProducer(Producer p) {
+            super.setProducer(log.wrap(p));
+        }
+    }
+
+    /**
+     * Passes the item to the child and, if latency is shown, records the time
+     * taken by the child.
+     */
+    private static <T> void timedOnNext(Subscriber<? super T> child, T t,
+            LatencyHistogram histogram, OperatorMetrics metrics) {
+        if (histogram == null) {
+            child.onNext(t);
+        } else {
+            long start = System.nanoTime();
+            child.onNext(t);
+            long nanos = System.nanoTime() - start;
+            histogram.record(nanos);
+            if (metrics != null)
+                metrics.recordLatency(nanos);
+        }
+    }
+
     private static <T> Subscriber<Message<T>> createErrorLoggingSubscriber(final Logger logger) {
         return new Subscriber<Message<T>>() {
 
@@ -83,59 +283,107 @@ public class OperatorLogging<T> implements Operator<T, T> {
     }
 
     private static <T> Observable<Message<T>> createObservableFromSubject(
-            PublishSubjectSingleSubscriber<T> subject) {
+            PublishSubjectSingleSubscriber<T> subject, final Gaps gaps,
+            final LatencyReport latency, final LatencyHistogram histogram,
+            final Lifecycle lifecycle, final Demand demand) {
         return subject.materialize().map(new Func1<Notification<T>, Message<T>>() {
 
             @Override
             public Message<T> call(Notification<T> n) {
-                return new Message<T>(n, "");
+                if (gaps == null && latency == null && demand == null
+                        && (lifecycle == null || n.isOnNext())) {
+                    return new Message<T>(n, "");
+                } else {
+                    StringBuilder b = new StringBuilder();
+                    if (gaps != null)
+                        gaps.appendTo(b);
+                    if (latency != null)
+                        latency.appendTo(b, histogram);
+                    if (lifecycle != null && !n.isOnNext())
+                        lifecycle.appendTimings(b);
+                    if (demand != null)
+                        demand.appendTo(b);
+                    return new Message<T>(n, b.toString());
+                }
             }
         });
     }
 
-    private static <T> Action0 createUnsubscriptionAction(final Parameters<T> p) {
-        return new Action0() {
-            @Override
-            public void call() {
-                // log unsubscription if requested
-                if (p.getUnsubscribedMessage() != null)
-                    log(p.getLogger(), p.getUnsubscribedMessage(), p.getUnsubscribedLevel(), null);
-            }
-
-        };
+    private static <T> Action0 createUnsubscriptionAction(final Parameters<T> p,
+            final Dispatcher dispatcher, final Lifecycle lifecycle) {
+        return () -> SubscriptionLog.logUnsubscribed(p, dispatcher, lifecycle);
     }
 
-    private static <T> Action0 createSubscriptionAction(final Parameters<T> p) {
-        return new Action0() {
-            @Override
-            public void call() {
-                // log subscription if requested
-                if (p.getSubscribedMessage() != null)
-                    log(p.getLogger(), p.getSubscribedMessage(), p.getSubscribedLevel(), null);
-            }
-        };
+    private static <T> Action0 createSubscriptionAction(final Parameters<T> p,
+            final Dispatcher dispatcher) {
+        return () -> SubscriptionLog.logSubscribed(p, dispatcher);
     }
 
     private static <T> Subscriber<T> createParentSubscriber(
-            final PublishSubjectSingleSubscriber<T> subject, final Subscriber<? super T> child) {
+            final PublishSubjectSingleSubscriber<T> subject, final Subscriber<? super T> child,
+            final LatencyHistogram histogram, final Lifecycle lifecycle,
+            final OperatorMetrics metrics, final Summary summary, final Demand demand,
+            final Gaps gaps, final IdleWatchdog.Watch watch, final FlightRecorder.Recording recording,
+            final Journal.Writer<T> journal) {
         return new Subscriber<T>(child) {
 
             @Override
             public void onCompleted() {
+                if (lifecycle != null)
+                    lifecycle.onTerminate();
+                if (metrics != null)
+                    metrics.onCompleted();
+                if (watch != null)
+                    watch.cancel();
+                if (recording != null)
+                    recording.record(Kind.OnCompleted, null);
+                if (journal != null)
+                    journal.onCompleted();
                 subject.onCompleted();
                 child.onCompleted();
             }
 
             @Override
             public void onError(Throwable e) {
+                if (lifecycle != null)
+                    lifecycle.onTerminate();
+                if (metrics != null)
+                    metrics.onError();
+                if (watch != null)
+                    watch.cancel();
+                if (recording != null)
+                    recording.onError(e);
+                if (journal != null)
+                    journal.onError(e);
                 subject.onError(e);
                 child.onError(e);
             }
 
             @Override
             public void onNext(T t) {
+                if (lifecycle != null)
+                    lifecycle.onNext();
+                if (metrics != null)
+                    metrics.onNext();
+                if (summary != null)
+                    summary.onNext();
+                if (demand != null)
+                    demand.onNext();
+                if (gaps != null)
+                    gaps.onNext();
+                if (watch != null)
+                    watch.onNext(t);
+                if (recording != null)
+                    recording.record(Kind.OnNext, t);
+                if (journal != null)
+                    journal.onNext(t);
                 subject.onNext(t);
-                child.onNext(t);
+                timedOnNext(child, t, histogram, metrics);
+            }
+
+            @Override
+            public void setProducer(Producer p) {
+                super.setProducer(demand == null ? p : demand.wrap(p));
             }
         };
     }
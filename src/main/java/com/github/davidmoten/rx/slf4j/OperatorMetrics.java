@@ -0,0 +1,135 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics recorded by the logging operators registered under one name.
+ * Counts are striped so that concurrent subscriptions do not contend on the
+ * hot path and the rate is derived from the count when read: each read keeps
+ * a sample of the count (at most one a second) and the rate is measured from
+ * the newest sample that is at least {@value #RATE_WINDOW_MS}ms old, so
+ * reading it does not change it for other readers.
+ */
+final class OperatorMetrics implements OperatorMetricsMXBean {
+
+    static final long RATE_WINDOW_MS = 10000;
+    private static final long SAMPLE_INTERVAL_MS = 1000;
+
+    private final String name;
+    private final Counter items = Counter.create();
+    private final Counter errors = Counter.create();
+    private final Counter completions = Counter.create();
+    private final AtomicLong activeSubscriptions = new AtomicLong();
+    private final LatencyHistogram.Shared latency = new LatencyHistogram.Shared();
+    private final Clock clock;
+    // guarded by this, oldest first
+    private final Deque<Sample> samples = new ArrayDeque<Sample>();
+
+    OperatorMetrics(String name, Clock clock) {
+        this.name = name;
+        this.clock = clock;
+        samples.add(new Sample(clock.now(), 0));
+    }
+
+    void onSubscribe() {
+        activeSubscriptions.incrementAndGet();
+    }
+
+    void onUnsubscribe() {
+        activeSubscriptions.decrementAndGet();
+    }
+
+    void onNext() {
+        items.increment();
+    }
+
+    void onError() {
+        errors.increment();
+    }
+
+    void onCompleted() {
+        completions.increment();
+    }
+
+    void recordLatency(long nanos) {
+        latency.record(nanos);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getItems() {
+        return items.get();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public long getCompletions() {
+        return completions.get();
+    }
+
+    @Override
+    public long getActiveSubscriptions() {
+        return activeSubscriptions.get();
+    }
+
+    @Override
+    public synchronized double getRatePerSecond() {
+        long now = clock.now();
+        long n = items.get();
+        if (now - samples.getLast().time >= SAMPLE_INTERVAL_MS)
+            samples.add(new Sample(now, n));
+        // keep the newest sample that is at least a window old as the base
+        while (samples.size() > 1) {
+            Iterator<Sample> it = samples.iterator();
+            it.next();
+            if (now - it.next().time >= RATE_WINDOW_MS)
+                samples.removeFirst();
+            else
+                break;
+        }
+        Sample base = samples.getFirst();
+        long elapsed = now - base.time;
+        return elapsed > 0 ? (n - base.count) * 1000.0 / elapsed : 0;
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        return latency.percentile(50);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        return latency.percentile(99);
+    }
+
+    @Override
+    public long getLatencyP999Nanos() {
+        return latency.percentile(99.9);
+    }
+
+    @Override
+    public long getLatencyMaxNanos() {
+        return latency.max();
+    }
+
+    private static final class Sample {
+        final long time;
+        final long count;
+
+        Sample(long time, long count) {
+            this.time = time;
+            this.count = count;
+        }
+    }
+}
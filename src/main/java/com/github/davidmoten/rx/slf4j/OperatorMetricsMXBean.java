@@ -0,0 +1,49 @@
+package com.github.davidmoten.rx.slf4j;
+
+/**
+ * Live metrics of the logging operators registered under one name with
+ * {@link Logging.Parameters.Builder#register(String)}. Published as a JMX
+ * MXBean named
+ * <tt>com.github.davidmoten.rx.slf4j:type=OperatorMetrics,name="&lt;name&gt;"</tt>
+ * and available in-process from {@link MetricsRegistry#get(String)}. The
+ * values are recorded whether or not the logging levels are enabled.
+ */
+public interface OperatorMetricsMXBean {
+
+    String getName();
+
+    long getItems();
+
+    long getErrors();
+
+    long getCompletions();
+
+    long getActiveSubscriptions();
+
+    /**
+     * Returns the rate of <i>onNext</i> notifications per second over about
+     * the last 10 seconds (or since registration if that is more recent), as
+     * measured by the clock of the first operator registered under the name.
+     * Reading the rate does not reset it.
+     *
+     * @return items per second
+     */
+    double getRatePerSecond();
+
+    /**
+     * Returns the median time taken downstream to process an <i>onNext</i> in
+     * nanoseconds. Only recorded if
+     * {@link Logging.Parameters.Builder#showLatency()} (or
+     * {@link Logging.Parameters.Builder#showLatencyPercentiles(double...)}) is
+     * used, otherwise 0.
+     *
+     * @return median latency in ns
+     */
+    long getLatencyP50Nanos();
+
+    long getLatencyP99Nanos();
+
+    long getLatencyP999Nanos();
+
+    long getLatencyMaxNanos();
+}
@@ -0,0 +1,109 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A budget of log lines (a token bucket) that can be shared between logging
+ * operators via {@link Logging.Parameters.Builder#limit(RateLimiter)} so that
+ * a whole subsystem is limited to, say, 100 lines per second. A burst of up to
+ * <tt>maxLines</tt> lines is allowed after which lines are allowed at the
+ * steady rate of <tt>maxLines</tt> per period. The number of lines suppressed
+ * is reported with the next line allowed.
+ *
+ * <p>
+ * The bucket is a single theoretical arrival time updated by compare-and-set
+ * (the generic cell rate algorithm) so it is lock-free and taking a token costs
+ * one CAS.
+ *
+ * <p>
+ * The limiter reads the time from the {@link Clock} given when it is created
+ * (not the clock of the operators using it) so operators with different
+ * clocks can share it.
+ */
+public final class RateLimiter {
+
+    private final long intervalNanos;
+    private final long periodNanos;
+    private final Clock clock;
+    // the time (in nanos) at which the bucket will be full again
+    private final AtomicLong fullTime = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong suppressed = new AtomicLong();
+
+    private RateLimiter(long intervalNanos, long periodNanos, Clock clock) {
+        this.intervalNanos = intervalNanos;
+        this.periodNanos = periodNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns a new rate limiter that allows bursts of up to
+     * <tt>maxLines</tt> lines and at most <tt>maxLines</tt> lines per
+     * <tt>per</tt>, timed by {@link Clock#monotonic()}.
+     *
+     * @param maxLines
+     *            maximum number of lines per period
+     * @param per
+     *            length of the period
+     * @param unit
+     *            unit of per
+     * @return new rate limiter
+     */
+    public static RateLimiter create(int maxLines, long per, TimeUnit unit) {
+        return create(maxLines, per, unit, Clock.monotonic());
+    }
+
+    /**
+     * Returns a new rate limiter that allows bursts of up to
+     * <tt>maxLines</tt> lines and at most <tt>maxLines</tt> lines per
+     * <tt>per</tt>, timed by the given clock.
+     *
+     * @param maxLines
+     *            maximum number of lines per period
+     * @param per
+     *            length of the period
+     * @param unit
+     *            unit of per
+     * @param clock
+     *            source of time for the budget
+     * @return new rate limiter
+     */
+    public static RateLimiter create(int maxLines, long per, TimeUnit unit, Clock clock) {
+        if (maxLines <= 0)
+            throw new IllegalArgumentException("maxLines must be positive");
+        if (per <= 0)
+            throw new IllegalArgumentException("per must be positive");
+        long periodNanos = unit.toNanos(per);
+        return new RateLimiter(Math.max(1, periodNanos / maxLines), periodNanos, clock);
+    }
+
+    /**
+     * Takes a token if one is available otherwise counts the line as
+     * suppressed.
+     *
+     * @return true if the line may be logged
+     */
+    boolean tryAcquire() {
+        long now = TimeUnit.MILLISECONDS.toNanos(clock.now());
+        while (true) {
+            long full = fullTime.get();
+            long next = Math.max(full, now) + intervalNanos;
+            if (next - now > periodNanos) {
+                suppressed.incrementAndGet();
+                return false;
+            } else if (fullTime.compareAndSet(full, next))
+                return true;
+        }
+    }
+
+    /**
+     * Returns the number of lines suppressed since the last call and resets
+     * it.
+     *
+     * @return number of lines suppressed
+     */
+    long drainSuppressed() {
+        // avoid the write when nothing was suppressed (the usual case)
+        return suppressed.get() == 0 ? 0 : suppressed.getAndSet(0);
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures the rate of events over a sliding window of the most recent
+ * <tt>over</tt> events. Timestamps are kept in a primitive ring buffer so
+ * marking an event allocates nothing, and slots are claimed with an atomic
+ * increment so that concurrent emitters (for example a merged stream) can
+ * share a meter. Used by {@link Log.Builder#rate(String, int, TimeUnit)} and
+ * {@link Logging.Parameters.Builder#showRate(String, int, TimeUnit)}.
+ */
+final class RateMeter {
+
+    private final AtomicLongArray times;
+    private final AtomicLong count = new AtomicLong();
+
+    RateMeter(int over) {
+        if (over <= 0)
+            throw new IllegalArgumentException("over must be positive");
+        this.times = new AtomicLongArray(over);
+    }
+
+    /**
+     * Records an event.
+     *
+     * @param now
+     *            the time of the event in ms
+     */
+    void mark(long now) {
+        long n = count.getAndIncrement();
+        times.set((int) (n % times.length()), now);
+    }
+
+    /**
+     * Returns the rate of the events in the window per the given unit or NaN
+     * if no time has elapsed since the oldest event in the window.
+     *
+     * @param now
+     *            the current time in ms
+     * @param per
+     *            the unit of the rate (for example per second)
+     * @return rate
+     */
+    double rate(long now, TimeUnit per) {
+        long n = count.get();
+        int size = times.length();
+        final long events;
+        final long oldest;
+        if (n >= size) {
+            events = size;
+            oldest = times.get((int) (n % size));
+        } else if (n > 0) {
+            events = n;
+            oldest = times.get(0);
+        } else {
+            return Double.NaN;
+        }
+        if (oldest >= now)
+            return Double.NaN;
+        else
+            return events / (double) (now - oldest) * per.toMillis(1);
+    }
+}
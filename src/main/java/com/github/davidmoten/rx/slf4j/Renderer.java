@@ -0,0 +1,195 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static com.github.davidmoten.rx.slf4j.Logging.addDelimited;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+
+import rx.Notification.Kind;
+import rx.functions.Func1;
+
+/**
+ * Renders and logs the final line for a notification. Created once by
+ * {@link Logging.Parameters.Builder#log()} from a snapshot of the builder so
+ * that formats are compiled once rather than parsed for every event.
+ *
+ * @param <T>
+ *            type of items being logged
+ */
+final class Renderer<T> {
+
+    private final Logger logger;
+    private final String onCompleteMessage;
+    private final boolean logOnNext;
+    private final boolean logOnError;
+    // null if the onNext value is not shown
+    private final CompiledFormat onNextFormat;
+    private final CompiledFormat onErrorFormat;
+    private final Level onNextLevel;
+    private final Level onErrorLevel;
+    private final Level onCompletedLevel;
+    private final Func1<? super T, ?> valueFunction;
+    private final boolean logStackTrace;
+    // null if memory usage is not shown
+    private final MemoryProbe memoryProbe;
+    private final boolean structured;
+    // null if values are rendered in full
+    private final ValueRenderer valueRenderer;
+    private final int maxValueLength;
+
+    Renderer(Logger logger, String onCompleteMessage, boolean logOnNext, boolean logOnError,
+            String onNextFormat, String onErrorFormat, Level onNextLevel, Level onErrorLevel,
+            Level onCompletedLevel, Func1<? super T, ?> valueFunction, boolean logStackTrace,
+            MemoryProbe memoryProbe, boolean structured, ValueRenderer valueRenderer,
+            int maxValueLength) {
+        this.logger = logger;
+        this.onCompleteMessage = onCompleteMessage;
+        this.logOnNext = logOnNext;
+        this.logOnError = logOnError;
+        this.onNextFormat = onNextFormat.length() > 0 ? CompiledFormat.compile(onNextFormat)
+                : null;
+        this.onErrorFormat = CompiledFormat.compile(onErrorFormat);
+        this.onNextLevel = onNextLevel;
+        this.onErrorLevel = onErrorLevel;
+        this.onCompletedLevel = onCompletedLevel;
+        this.valueFunction = valueFunction;
+        this.logStackTrace = logStackTrace;
+        this.memoryProbe = memoryProbe;
+        this.structured = structured;
+        this.valueRenderer = valueRenderer;
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * Logs the notification.
+     *
+     * @param kind
+     *            notification kind
+     * @param value
+     *            the <i>onNext</i> value, null otherwise
+     * @param error
+     *            the <i>onError</i> throwable, null otherwise
+     * @param message
+     *            the message built by the logging stages
+     * @param fields
+     *            the typed fields added by the logging stages if
+     *            {@link #isStructured()}, null otherwise
+     * @param line
+     *            empty builder to render the log line into (can be reused
+     *            between calls)
+     * @param dispatcher
+     *            passes the rendered line to the logger
+     */
+    void log(Kind kind, T value, Throwable error, CharSequence message, KeyValues fields,
+            StringBuilder line, Dispatcher dispatcher) {
+        if (kind == Kind.OnCompleted && onCompleteMessage != null) {
+            addDelimited(line, onCompleteMessage);
+            addDelimited(line, message);
+            addMemory(line, fields);
+            dispatcher.dispatch(logger, line.toString(), onCompletedLevel, null, fields);
+        } else if (kind == Kind.OnError && logOnError) {
+            onErrorFormat.appendTo(line, error.getMessage());
+            addDelimited(line, message);
+            addMemory(line, fields);
+            dispatcher.dispatch(logger, line.toString(), onErrorLevel, error, fields);
+        } else if (kind == Kind.OnNext && logOnNext) {
+            if (onNextFormat != null) {
+                Object v = valueFunction.call(value);
+                if (valueRenderer != null) {
+                    if (fields != null)
+                        fields.add("value", boundedText(v));
+                    else
+                        onNextFormat.appendTo(line, v, valueRenderer, maxValueLength);
+                } else if (fields != null)
+                    fields.add("value", v);
+                else
+                    onNextFormat.appendTo(line, v);
+            }
+            addDelimited(line, message);
+            addMemory(line, fields);
+            addStackTrace(line);
+            dispatcher.dispatch(logger, line.toString(), onNextLevel, null, fields);
+        }
+    }
+
+    /**
+     * Returns true if typed values are logged as the key/value pairs of SLF4J
+     * 2 events rather than as text.
+     *
+     * @return true if structured
+     */
+    boolean isStructured() {
+        return structured;
+    }
+
+    /**
+     * Returns the level that <i>onNext</i> notifications are logged at or null
+     * if they are never logged.
+     *
+     * @return onNext level or null
+     */
+    Level onNextLevel() {
+        return logOnNext ? onNextLevel : null;
+    }
+
+    /**
+     * Returns the level that <i>onError</i> notifications are logged at or
+     * null if they are never logged.
+     *
+     * @return onError level or null
+     */
+    Level onErrorLevel() {
+        return logOnError ? onErrorLevel : null;
+    }
+
+    /**
+     * Returns the level that <i>onCompleted</i> notifications are logged at or
+     * null if they are never logged.
+     *
+     * @return onCompleted level or null
+     */
+    Level onCompletedLevel() {
+        return onCompleteMessage != null ? onCompletedLevel : null;
+    }
+
+    /**
+     * Appends a value (like the last value of an idle stream) bounded by the
+     * configured {@link ValueRenderer} if there is one.
+     *
+     * @param b
+     *            to append to
+     * @param value
+     *            value to append
+     */
+    void appendValue(StringBuilder b, Object value) {
+        if (valueRenderer != null)
+            valueRenderer.appendTo(b, value, maxValueLength);
+        else
+            CompiledFormat.appendValue(b, value);
+    }
+
+    private String boundedText(Object value) {
+        StringBuilder b = new StringBuilder();
+        valueRenderer.appendTo(b, value, maxValueLength);
+        return b.toString();
+    }
+
+    private void addStackTrace(StringBuilder s) {
+        if (logStackTrace) {
+            for (StackTraceElement elem : Thread.currentThread().getStackTrace()) {
+                s.append("\n    ");
+                s.append(elem);
+            }
+        }
+    }
+
+    private void addMemory(StringBuilder s, KeyValues fields) {
+        if (memoryProbe != null) {
+            if (fields != null)
+                memoryProbe.addTo(fields);
+            else
+                addDelimited(s, memoryProbe.text());
+        }
+    }
+}
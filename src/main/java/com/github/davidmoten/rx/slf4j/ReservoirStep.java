@@ -0,0 +1,90 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.github.davidmoten.rx.slf4j.Stage.Step;
+
+import rx.Notification.Kind;
+
+/**
+ * Keeps a uniform random sample of at most <tt>k</tt> <i>onNext</i> values
+ * for each time window (reservoir sampling, Algorithm R) and logs the sample
+ * once the window has closed. The window is closed by the first
+ * <i>onNext</i> that arrives after its end (that line includes the sample of
+ * the closed window) or by the terminal notification. Other <i>onNext</i>
+ * notifications are not logged.
+ *
+ * @param <T>
+ *            type of items being logged
+ */
+final class ReservoirStep<T> implements Step<T> {
+
+    private final String label;
+    private final long windowMs;
+    private final Clock clock;
+    private final Object[] reservoir;
+    // number of values offered in the current window
+    private long offered;
+    private boolean started;
+    private long windowEnd;
+
+    ReservoirStep(String label, int k, long windowMs, Clock clock) {
+        this.label = label;
+        this.windowMs = windowMs;
+        this.clock = clock;
+        this.reservoir = new Object[k];
+    }
+
+    @Override
+    public boolean call(Kind kind, T value, Throwable error, StringBuilder message) {
+        if (kind != Kind.OnNext) {
+            addSample(message);
+            return true;
+        }
+        long now = clock.now();
+        if (!started) {
+            started = true;
+            windowEnd = now + windowMs;
+        }
+        final boolean closed;
+        if (now >= windowEnd) {
+            addSample(message);
+            windowEnd = now + windowMs;
+            closed = true;
+        } else {
+            closed = false;
+        }
+        offer(value);
+        return closed;
+    }
+
+    private void offer(T value) {
+        offered++;
+        if (offered <= reservoir.length) {
+            reservoir[(int) (offered - 1)] = value;
+        } else {
+            long j = ThreadLocalRandom.current().nextLong(offered);
+            if (j < reservoir.length)
+                reservoir[(int) j] = value;
+        }
+    }
+
+    private void addSample(StringBuilder message) {
+        if (offered > 0) {
+            if (message != null) {
+                int n = (int) Math.min(offered, reservoir.length);
+                Logging.addDelimited(message, label);
+                message.append("=[");
+                for (int i = 0; i < n; i++) {
+                    if (i > 0)
+                        message.append(", ");
+                    message.append(reservoir[i]);
+                }
+                message.append(']');
+            }
+            Arrays.fill(reservoir, null);
+            offered = 0;
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.github.davidmoten.rx.slf4j.Logging.Parameters;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableSubscriber;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.ObservableSource;
+import io.reactivex.rxjava3.core.ObservableTransformer;
+import io.reactivex.rxjava3.core.Observer;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.exceptions.Exceptions;
+import io.reactivex.rxjava3.functions.Function;
+import io.reactivex.rxjava3.operators.QueueDisposable;
+import io.reactivex.rxjava3.operators.QueueFuseable;
+import io.reactivex.rxjava3.operators.QueueSubscription;
+import io.reactivex.rxjava3.plugins.RxJavaPlugins;
+
+/**
+ * Logs an RxJava 3 {@link Flowable} or {@link Observable} with the same
+ * options as {@link OperatorLogging}. Created by
+ * {@link Logging.Parameters.Builder#rx3()} and applied with
+ * <tt>compose</tt>:
+ *
+ * <pre>
+ * flowable.compose(Logging.&lt;Integer&gt; logger().showCount().every(1000).rx3())
+ * </pre>
+ *
+ * <p>
+ * The logging subscriber takes part in queue fusion: if upstream supports it,
+ * synchronous and asynchronous fusion requested by downstream is passed
+ * through and items are logged as downstream polls them, so adding logging
+ * does not stop the surrounding operators fusing. With asynchronous fusion the
+ * terminal event is logged when downstream has drained the queue. Fusion across a thread
+ * boundary (like <tt>observeOn</tt>) is refused so that lines are always
+ * logged on the emitting thread. When fused, the time taken by downstream
+ * (see {@link Logging.Parameters.Builder#showLatency()}) is not measured.
+ *
+ * <p>
+ * The unsubscription message is logged when the stream terminates or is
+ * cancelled. RxJava 3 is an optional dependency of this library. RxJava 1 is
+ * still required at runtime because the logging core shared with
+ * {@link OperatorLogging} uses it, but the builder options that take a
+ * scheduler have overloads for an RxJava 3 {@link Scheduler} and an RxJava 3
+ * {@link Function} can be passed where a <tt>Func1</tt> is expected with
+ * {@link #func1(Function)}.
+ *
+ * @param <T>
+ *            type of items being logged
+ */
+public final class Rx3Logging<T> implements FlowableTransformer<T, T>, ObservableTransformer<T, T> {
+
+    private final Parameters<T> parameters;
+
+    Rx3Logging(Parameters<T> parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Adapts an RxJava 3 {@link Function} for the builder options that take
+     * an <tt>rx.functions.Func1</tt> (like
+     * {@link Logging.Parameters.Builder#value(rx.functions.Func1)}). Lambdas
+     * and method references can be passed to those options directly. A
+     * checked exception thrown by the function is rethrown wrapped in a
+     * <tt>RuntimeException</tt>.
+     * 
+     * @param function
+     *            the RxJava 3 function
+     * @param <A>
+     *            argument type
+     * @param <R>
+     *            result type
+     * @return the function as an RxJava 1 <tt>Func1</tt>
+     */
+    public static <A, R> rx.functions.Func1<A, R> func1(
+            final Function<? super A, ? extends R> function) {
+        return a -> {
+            try {
+                return function.apply(a);
+            } catch (Throwable e) {
+                throw Exceptions.propagate(e);
+            }
+        };
+    }
+
+    /**
+     * Adapts an RxJava 3 {@link Scheduler} for the logging core. Adapters of
+     * the same scheduler are equal so that they share per scheduler state
+     * (like the timer wheel of {@link Logging.Parameters.Builder#warnIfIdle}).
+     */
+    static rx.Scheduler scheduler(Scheduler scheduler) {
+        return new Rx3Scheduler(scheduler);
+    }
+
+    @Override
+    public Publisher<T> apply(Flowable<T> upstream) {
+        return new LoggingFlowable<T>(upstream, parameters);
+    }
+
+    @Override
+    public ObservableSource<T> apply(Observable<T> upstream) {
+        return new LoggingObservable<T>(upstream, parameters);
+    }
+
+    private static final class LoggingFlowable<T> extends Flowable<T> {
+
+        private final Flowable<T> upstream;
+        private final Parameters<T> parameters;
+
+        LoggingFlowable(Flowable<T> upstream, Parameters<T> parameters) {
+            this.upstream = upstream;
+            this.parameters = parameters;
+        }
+
+        @Override
+        protected void subscribeActual(Subscriber<? super T> s) {
+            upstream.subscribe(new LoggingSubscriber<T>(s, new SubscriptionLog<T>(parameters)));
+        }
+    }
+
+    private static final class LoggingObservable<T> extends Observable<T> {
+
+        private final Observable<T> upstream;
+        private final Parameters<T> parameters;
+
+        LoggingObservable(Observable<T> upstream, Parameters<T> parameters) {
+            this.upstream = upstream;
+            this.parameters = parameters;
+        }
+
+        @Override
+        protected void subscribeActual(Observer<? super T> observer) {
+            upstream.subscribe(new LoggingObserver<T>(observer, new SubscriptionLog<T>(parameters)));
+        }
+    }
+
+    /**
+     * The logging and fusion shared by the {@link Flowable} and
+     * {@link Observable} subscribers.
+     */
+    private abstract static class Base<T> implements QueueFuseable<T> {
+
+        final SubscriptionLog<T> log;
+        // null if upstream is not fuseable
+        QueueFuseable<T> queue;
+        int sourceMode;
+        // true once the terminal event has been logged
+        boolean done;
+        // set by upstream in ASYNC fusion mode where the terminal event is
+        // logged once downstream has drained the queue
+        volatile boolean terminated;
+        // written before terminated
+        Throwable error;
+
+        Base(SubscriptionLog<T> log) {
+            this.log = log;
+        }
+
+        abstract void emitNext(T t);
+
+        abstract void emitError(Throwable e);
+
+        abstract void emitComplete();
+
+        final void next(T t) {
+            if (done || terminated)
+                return;
+            if (sourceMode != NONE) {
+                // upstream signals that items can be polled
+                emitNext(null);
+            } else {
+                log.onNext(t);
+                if (log.isTimed()) {
+                    long start = System.nanoTime();
+                    emitNext(t);
+                    log.recordLatency(System.nanoTime() - start);
+                } else {
+                    emitNext(t);
+                }
+            }
+        }
+
+        final void error(Throwable e) {
+            if (done || terminated) {
+                RxJavaPlugins.onError(e);
+                return;
+            }
+            if (sourceMode == ASYNC) {
+                // the queued items have not been polled yet
+                error = e;
+                terminated = true;
+                emitError(e);
+            } else {
+                done = true;
+                log.onError(e);
+                emitError(e);
+                log.close();
+            }
+        }
+
+        final void complete() {
+            if (done || terminated)
+                return;
+            if (sourceMode == ASYNC) {
+                // the queued items have not been polled yet
+                terminated = true;
+                emitComplete();
+            } else {
+                done = true;
+                log.onCompleted();
+                emitComplete();
+                log.close();
+            }
+        }
+
+        /**
+         * Logs the terminal event of an ASYNC fused upstream once downstream
+         * has found the queue empty (or given up on it).
+         */
+        private void drained() {
+            if (!done) {
+                done = true;
+                Throwable e = error;
+                if (e == null)
+                    log.onCompleted();
+                else
+                    log.onError(e);
+                log.close();
+            }
+        }
+
+        @Override
+        public final int requestFusion(int mode) {
+            if (queue == null || (mode & BOUNDARY) != 0)
+                return NONE;
+            int m = queue.requestFusion(mode);
+            sourceMode = m;
+            return m;
+        }
+
+        @Override
+        public final T poll() throws Throwable {
+            // read before polling so that an item offered just before
+            // termination is not missed
+            boolean d = terminated;
+            T t;
+            try {
+                t = queue.poll();
+            } catch (Throwable e) {
+                Exceptions.throwIfFatal(e);
+                if (!done) {
+                    done = true;
+                    log.onError(e);
+                    log.close();
+                }
+                throw e;
+            }
+            if (t != null) {
+                log.onNext(t);
+            } else if (sourceMode == SYNC && !done) {
+                // a synchronous source is complete when the queue is empty
+                done = true;
+                log.onCompleted();
+                log.close();
+            } else if (d) {
+                drained();
+            }
+            return t;
+        }
+
+        @Override
+        public final boolean isEmpty() {
+            boolean d = terminated;
+            boolean empty = queue.isEmpty();
+            if (empty && d)
+                drained();
+            return empty;
+        }
+
+        @Override
+        public final void clear() {
+            queue.clear();
+            if (terminated)
+                drained();
+        }
+
+        @Override
+        public final boolean offer(T value) {
+            throw new UnsupportedOperationException("Should not be called!");
+        }
+
+        @Override
+        public final boolean offer(T v1, T v2) {
+            throw new UnsupportedOperationException("Should not be called!");
+        }
+    }
+
+    private static final class LoggingSubscriber<T> extends Base<T>
+            implements FlowableSubscriber<T>, QueueSubscription<T> {
+
+        private final Subscriber<? super T> downstream;
+        private Subscription upstream;
+
+        LoggingSubscriber(Subscriber<? super T> downstream, SubscriptionLog<T> log) {
+            super(log);
+            this.downstream = downstream;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            if (s instanceof QueueSubscription)
+                queue = (QueueSubscription<T>) s;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T t) {
+            next(t);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error(e);
+        }
+
+        @Override
+        public void onComplete() {
+            complete();
+        }
+
+        @Override
+        public void request(long n) {
+            log.onRequest(n);
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            upstream.cancel();
+            log.close();
+        }
+
+        @Override
+        void emitNext(T t) {
+            downstream.onNext(t);
+        }
+
+        @Override
+        void emitError(Throwable e) {
+            downstream.onError(e);
+        }
+
+        @Override
+        void emitComplete() {
+            downstream.onComplete();
+        }
+    }
+
+    private static final class LoggingObserver<T> extends Base<T>
+            implements Observer<T>, QueueDisposable<T> {
+
+        private final Observer<? super T> downstream;
+        private Disposable upstream;
+
+        LoggingObserver(Observer<? super T> downstream, SubscriptionLog<T> log) {
+            super(log);
+            this.downstream = downstream;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onSubscribe(Disposable d) {
+            upstream = d;
+            if (d instanceof QueueDisposable)
+                queue = (QueueDisposable<T>) d;
+            // an Observable is not backpressured
+            log.onRequest(Long.MAX_VALUE);
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T t) {
+            next(t);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error(e);
+        }
+
+        @Override
+        public void onComplete() {
+            complete();
+        }
+
+        @Override
+        public void dispose() {
+            upstream.dispose();
+            log.close();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return upstream.isDisposed();
+        }
+
+        @Override
+        void emitNext(T t) {
+            downstream.onNext(t);
+        }
+
+        @Override
+        void emitError(Throwable e) {
+            downstream.onError(e);
+        }
+
+        @Override
+        void emitComplete() {
+            downstream.onComplete();
+        }
+    }
+
+    private static final class Rx3Scheduler extends rx.Scheduler {
+
+        private final Scheduler scheduler;
+
+        Rx3Scheduler(Scheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public Worker createWorker() {
+            return new Rx3Worker(scheduler.createWorker());
+        }
+
+        @Override
+        public long now() {
+            return scheduler.now(TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int hashCode() {
+            return scheduler.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Rx3Scheduler && ((Rx3Scheduler) o).scheduler.equals(scheduler);
+        }
+    }
+
+    private static final class Rx3Worker extends rx.Scheduler.Worker {
+
+        private final Scheduler.Worker worker;
+
+        Rx3Worker(Scheduler.Worker worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public rx.Subscription schedule(rx.functions.Action0 action) {
+            return schedule(action, 0, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public rx.Subscription schedule(rx.functions.Action0 action, long delayTime,
+                TimeUnit unit) {
+            Disposable d = worker.schedule(action::call, delayTime, unit);
+            return rx.subscriptions.Subscriptions.create(d::dispose);
+        }
+
+        @Override
+        public long now() {
+            return worker.now(TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void unsubscribe() {
+            worker.dispose();
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return worker.isDisposed();
+        }
+    }
+}
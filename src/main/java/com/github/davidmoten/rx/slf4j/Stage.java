@@ -0,0 +1,55 @@
+package com.github.davidmoten.rx.slf4j;
+
+import rx.Notification.Kind;
+
+/**
+ * A single step of the logging pipeline built by
+ * {@link Logging.Parameters.Builder}. A {@link Stage} creates a fresh
+ * {@link Step} for every subscription so that counts and timers are not
+ * shared between subscriptions unless the user asked for that explicitly.
+ *
+ * <p>
+ * Stages can be run inline by {@link OperatorLogging} (the fused mode) or
+ * be adapted to an Rx transformation of {@link Logging.Parameters.Message}
+ * streams when the builder also contains arbitrary transformations added
+ * via {@link Logging.Parameters.Builder#to}.
+ *
+ * @param <T>
+ *            type of items being logged
+ */
+interface Stage<T> {
+
+    /**
+     * Returns the per-subscription state of this stage.
+     *
+     * @param fields
+     *            the fields of structured events that typed values should be
+     *            added to instead of the message (see
+     *            {@link Logging.Parameters.Builder#structured()}) or null if
+     *            the message is text only
+     * @return a new step
+     */
+    Step<T> create(KeyValues fields);
+
+    interface Step<T> {
+
+        /**
+         * Processes a notification. Returns false if the notification should
+         * not be passed to succeeding steps (and thus not be logged).
+         *
+         * @param kind
+         *            the notification kind
+         * @param value
+         *            the <i>onNext</i> value, null otherwise
+         * @param error
+         *            the <i>onError</i> throwable, null otherwise
+         * @param message
+         *            the log message built so far to which this step may
+         *            append or null if the logging level for this kind of
+         *            notification is not enabled (so the step should update
+         *            its state but not render anything)
+         * @return true if and only if the notification should be passed on
+         */
+        boolean call(Kind kind, T value, Throwable error, StringBuilder message);
+    }
+}
@@ -0,0 +1,296 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static com.github.davidmoten.rx.slf4j.Logging.isEnabled;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Parameters;
+import com.github.davidmoten.rx.slf4j.Stage.Step;
+
+import rx.Notification.Kind;
+import rx.Producer;
+import rx.Subscription;
+import rx.exceptions.Exceptions;
+
+/**
+ * The logging of one subscription when the logging stages are fused: runs the
+ * stages inline on the emitting thread without any intermediate subject,
+ * materialization or Rx operators. Independent of the version of RxJava so
+ * that it is shared by the RxJava 1 {@link OperatorLogging} and the RxJava 3
+ * {@link Rx3Logging} subscribers, which only call the notification methods
+ * (which must be serialized) and {@link #close()}.
+ *
+ * @param <T>
+ *            type of items being logged
+ */
+final class SubscriptionLog<T> {
+
+    private final Step<T>[] steps;
+    private final Renderer<T> renderer;
+    // null if events are not structured
+    private final KeyValues fields;
+    private final Dispatcher dispatcher;
+    private final Logger logger;
+    private final long checkLevelIntervalMs;
+    private final Clock clock;
+    private final Parameters<T> parameters;
+    // null if latency is not shown
+    private final LatencyReport latency;
+    private final LatencyHistogram histogram;
+    private final Lifecycle lifecycle;
+    private final OperatorMetrics metrics;
+    private final Summary summary;
+    private final Subscription summarySubscription;
+    private final Demand demand;
+    private final Gaps gaps;
+    private final IdleWatchdog.Watch watch;
+    private final FlightRecorder.Recording recording;
+    private final Journal.Writer<T> journal;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // reused for every notification (notifications are serialized)
+    private final StringBuilder message = new StringBuilder();
+    private final StringBuilder line = new StringBuilder();
+    private boolean logging = true;
+    private boolean onNextEnabled;
+    private boolean onErrorEnabled;
+    private boolean onCompletedEnabled;
+    private long nextCheckLevelTime;
+
+    /**
+     * Starts logging a subscription (logs the subscription if requested).
+     *
+     * @param parameters
+     *            parameters with fusable stages
+     */
+    SubscriptionLog(Parameters<T> parameters) {
+        this.renderer = parameters.getRenderer();
+        this.fields = renderer.isStructured() ? new KeyValues() : null;
+        // create the per-subscription state of every stage
+        List<Stage<T>> stages = parameters.getStages();
+        Step<T>[] s = newSteps(stages.size());
+        for (int i = 0; i < s.length; i++) {
+            s[i] = stages.get(i).create(fields);
+        }
+        this.steps = s;
+        this.parameters = parameters;
+        this.dispatcher = parameters.createDispatcher();
+        this.logger = parameters.getLogger();
+        this.checkLevelIntervalMs = parameters.getCheckLevelIntervalMs();
+        this.clock = parameters.getClock();
+        this.latency = parameters.getLatency();
+        this.histogram = latency == null ? null : new LatencyHistogram();
+        this.lifecycle = parameters.getLifecycleStats() == null ? null
+                : new Lifecycle(parameters.getLifecycleStats());
+        this.metrics = parameters.getMetrics();
+        this.demand = parameters.isShowRequests() ? new Demand() : null;
+        this.gaps = parameters.isShowGaps() ? new Gaps() : null;
+        if (metrics != null)
+            metrics.onSubscribe();
+        logSubscribed(parameters, dispatcher);
+        Summary.Spec spec = parameters.getSummary();
+        if (spec == null) {
+            this.summary = null;
+            this.summarySubscription = null;
+        } else {
+            this.summary = new Summary(spec, logger, dispatcher);
+            this.summarySubscription = summary.start();
+        }
+        IdleWatchdog watchdog = parameters.getIdleWatchdog();
+        this.watch = watchdog == null ? null
+                : watchdog.watch(logger, dispatcher, renderer, parameters.getIdleDurationMs());
+        FlightRecorder recorder = parameters.getFlightRecorder();
+        this.recording = recorder == null ? null : recorder.start(logger, dispatcher, renderer, clock);
+        Journal.Spec<T> journalSpec = parameters.getJournal();
+        this.journal = journalSpec == null ? null : journalSpec.start();
+        checkLevels();
+        this.nextCheckLevelTime = clock.now() + checkLevelIntervalMs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Step<T>[] newSteps(int n) {
+        return (Step<T>[]) new Step<?>[n];
+    }
+
+    void onNext(T t) {
+        // first so that the gap is measured to the arrival of the item
+        if (gaps != null)
+            gaps.onNext();
+        if (lifecycle != null)
+            lifecycle.onNext();
+        if (metrics != null)
+            metrics.onNext();
+        if (summary != null)
+            summary.onNext();
+        if (demand != null)
+            demand.onNext();
+        if (watch != null)
+            watch.onNext(t);
+        if (recording != null)
+            recording.record(Kind.OnNext, t);
+        if (journal != null)
+            journal.onNext(t);
+        log(Kind.OnNext, t, null);
+    }
+
+    void onCompleted() {
+        if (lifecycle != null)
+            lifecycle.onTerminate();
+        if (metrics != null)
+            metrics.onCompleted();
+        if (watch != null)
+            watch.cancel();
+        if (recording != null)
+            recording.record(Kind.OnCompleted, null);
+        if (journal != null)
+            journal.onCompleted();
+        log(Kind.OnCompleted, null, null);
+    }
+
+    void onError(Throwable e) {
+        if (lifecycle != null)
+            lifecycle.onTerminate();
+        if (metrics != null)
+            metrics.onError();
+        if (watch != null)
+            watch.cancel();
+        if (recording != null)
+            recording.onError(e);
+        if (journal != null)
+            journal.onError(e);
+        log(Kind.OnError, null, e);
+    }
+
+    /**
+     * Returns true if the time taken by downstream to process each
+     * <i>onNext</i> should be passed to {@link #recordLatency(long)}.
+     *
+     * @return true if latency is shown
+     */
+    boolean isTimed() {
+        return histogram != null;
+    }
+
+    void recordLatency(long nanos) {
+        histogram.record(nanos);
+        if (metrics != null)
+            metrics.recordLatency(nanos);
+    }
+
+    Producer wrap(Producer producer) {
+        return demand == null ? producer : demand.wrap(producer);
+    }
+
+    void onRequest(long n) {
+        if (demand != null)
+            demand.onRequest(n);
+    }
+
+    /**
+     * Stops the periodic logging and logs the unsubscription (if requested).
+     * Only the first call has any effect.
+     */
+    void close() {
+        if (closed.compareAndSet(false, true)) {
+            // stop the summaries before the dispatcher is closed
+            if (summarySubscription != null)
+                summarySubscription.unsubscribe();
+            if (watch != null)
+                watch.cancel();
+            if (recording != null)
+                recording.close();
+            if (journal != null)
+                journal.close();
+            logUnsubscribed(parameters, dispatcher, lifecycle);
+            if (metrics != null)
+                metrics.onUnsubscribe();
+        }
+    }
+
+    private void checkLevels() {
+        onNextEnabled = isEnabled(logger, renderer.onNextLevel());
+        onErrorEnabled = isEnabled(logger, renderer.onErrorLevel());
+        onCompletedEnabled = isEnabled(logger, renderer.onCompletedLevel());
+    }
+
+    private boolean isLevelEnabled(Kind kind) {
+        if (checkLevelIntervalMs > 0) {
+            long now = clock.now();
+            if (now >= nextCheckLevelTime) {
+                checkLevels();
+                nextCheckLevelTime = now + checkLevelIntervalMs;
+            }
+        }
+        if (kind == Kind.OnNext)
+            return onNextEnabled;
+        else if (kind == Kind.OnError)
+            return onErrorEnabled;
+        else
+            return onCompletedEnabled;
+    }
+
+    private void log(Kind kind, T value, Throwable error) {
+        if (logging) {
+            final StringBuilder m;
+            if (isLevelEnabled(kind)) {
+                message.setLength(0);
+                m = message;
+                if (fields != null)
+                    fields.clear();
+            } else if (onNextEnabled || onErrorEnabled || onCompletedEnabled) {
+                // update the state of the steps but don't build a message
+                m = null;
+            } else {
+                return;
+            }
+            try {
+                for (Step<T> step : steps) {
+                    if (!step.call(kind, value, error, m)) {
+                        return;
+                    }
+                }
+                if (m != null) {
+                    if (gaps != null)
+                        gaps.appendTo(m);
+                    if (latency != null)
+                        latency.appendTo(m, histogram);
+                    if (lifecycle != null && kind != Kind.OnNext)
+                        lifecycle.appendTimings(m);
+                    if (demand != null)
+                        demand.appendTo(m);
+                    line.setLength(0);
+                    renderer.log(kind, value, error, m, fields, line, dispatcher);
+                }
+            } catch (Throwable e) {
+                Exceptions.throwIfFatal(e);
+                // as with the non-fused path, stop logging for this
+                // subscription but let the stream continue
+                logging = false;
+                logger.error("the logging transformations threw an exception: " + e.getMessage(),
+                        e);
+            }
+        }
+    }
+
+    static void logSubscribed(Parameters<?> p, Dispatcher dispatcher) {
+        if (p.getSubscribedMessage() != null)
+            dispatcher.dispatch(p.getLogger(), p.getSubscribedMessage(), p.getSubscribedLevel(),
+                    null);
+    }
+
+    static void logUnsubscribed(Parameters<?> p, Dispatcher dispatcher, Lifecycle lifecycle) {
+        String message = p.getUnsubscribedMessage();
+        if (lifecycle != null) {
+            // record the timings even if unsubscription is not logged
+            StringBuilder b = new StringBuilder(message == null ? "" : message);
+            lifecycle.onUnsubscribe(b);
+            if (message != null)
+                message = b.toString();
+        }
+        if (message != null)
+            dispatcher.dispatch(p.getLogger(), message, p.getUnsubscribedLevel(), null);
+        dispatcher.close();
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static com.github.davidmoten.rx.slf4j.LatencyReport.appendDuration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+
+import rx.Scheduler;
+import rx.Scheduler.Worker;
+import rx.Subscription;
+
+/**
+ * Logs a summary of one subscription periodically on a {@link Scheduler}
+ * (requested by {@link Logging.Parameters.Builder#summaryEvery}) so that a
+ * stalled stream still produces a heartbeat. The emitting thread only updates
+ * the count and the gap extremes, the line is built on the scheduler.
+ */
+final class Summary {
+
+    private final Spec spec;
+    private final Logger logger;
+    private final Dispatcher dispatcher;
+    private final long startTime = System.nanoTime();
+    // written by the emitting thread only, read by the scheduler
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong minGap = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxGap = new AtomicLong(-1);
+    // used by the emitting thread only
+    private long lastItemTime;
+    // used by the scheduler only
+    private long lastCount;
+    private long lastReportTime = startTime;
+
+    Summary(Spec spec, Logger logger, Dispatcher dispatcher) {
+        this.spec = spec;
+        this.logger = logger;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Starts the periodic reports.
+     *
+     * @return subscription that stops the reports when unsubscribed
+     */
+    Subscription start() {
+        Worker worker = spec.scheduler.createWorker();
+        worker.schedulePeriodically(this::report, spec.periodMs, spec.periodMs,
+                TimeUnit.MILLISECONDS);
+        return worker;
+    }
+
+    void onNext() {
+        long now = System.nanoTime();
+        long n = count.get();
+        if (n > 0) {
+            long gap = now - lastItemTime;
+            if (gap < minGap.get())
+                accumulateMin(gap);
+            if (gap > maxGap.get())
+                accumulateMax(gap);
+        }
+        lastItemTime = now;
+        // single writer so no need for an atomic increment
+        count.lazySet(n + 1);
+    }
+
+    private void accumulateMin(long gap) {
+        long m = minGap.get();
+        while (gap < m && !minGap.compareAndSet(m, gap)) {
+            m = minGap.get();
+        }
+    }
+
+    private void accumulateMax(long gap) {
+        long m = maxGap.get();
+        while (gap > m && !maxGap.compareAndSet(m, gap)) {
+            m = maxGap.get();
+        }
+    }
+
+    void report() {
+        if (!Logging.isEnabled(logger, spec.level))
+            return;
+        long now = System.nanoTime();
+        long n = count.get();
+        long delta = n - lastCount;
+        long min = minGap.getAndSet(Long.MAX_VALUE);
+        long max = maxGap.getAndSet(-1);
+        StringBuilder b = new StringBuilder("summary");
+        Logging.addDelimited(b, "count", n);
+        Logging.addDelimited(b, "delta", delta);
+        Logging.addDelimited(b, "rate=");
+        Decimals.append(b, delta * 1000000000.0 / Math.max(1, now - lastReportTime), 3);
+        if (delta == 0) {
+            Logging.addDelimited(b, "idle");
+        } else if (max >= 0) {
+            // no gap is measured when the first item is the only one
+            Logging.addDelimited(b, "minGap=");
+            appendDuration(b, min);
+            b.append(", maxGap=");
+            appendDuration(b, max);
+        }
+        if (spec.memoryProbe != null)
+            Logging.addDelimited(b, spec.memoryProbe.text());
+        lastCount = n;
+        lastReportTime = now;
+        dispatcher.dispatch(logger, b.toString(), spec.level, null);
+    }
+
+    /**
+     * What to report and how often.
+     */
+    static final class Spec {
+        final long periodMs;
+        final Scheduler scheduler;
+        final Level level;
+        // null if memory is not shown
+        final MemoryProbe memoryProbe;
+
+        Spec(long periodMs, Scheduler scheduler, Level level, MemoryProbe memoryProbe) {
+            this.periodMs = periodMs;
+            this.scheduler = scheduler;
+            this.level = level;
+            this.memoryProbe = memoryProbe;
+        }
+    }
+}
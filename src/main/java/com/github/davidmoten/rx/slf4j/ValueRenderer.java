@@ -0,0 +1,41 @@
+package com.github.davidmoten.rx.slf4j;
+
+/**
+ * Renders <i>onNext</i> values into the log line within a length limit (see
+ * {@link Logging.Parameters.Builder#maxValueLength(int)}) so that a single
+ * huge value (a big batch or payload) is not rendered in full only to be
+ * logged.
+ */
+public interface ValueRenderer {
+
+    /**
+     * Appends the value to the builder using at most <tt>maxLength</tt>
+     * characters, followed by <tt>...</tt> if it was truncated. Implementations
+     * should stop rendering once the limit is reached rather than render the
+     * whole value and truncate it.
+     *
+     * @param b
+     *            builder to append to
+     * @param value
+     *            value to render (may be null)
+     * @param maxLength
+     *            maximum number of characters to append (excluding the
+     *            truncation marker)
+     */
+    void appendTo(StringBuilder b, Object value, int maxLength);
+
+    /**
+     * Returns the default renderer that renders element by element and stops
+     * at the limit for {@link CharSequence}s, collections, maps and arrays, and
+     * shows the length and the leading bytes in hex for <tt>byte[]</tt> (for
+     * example <tt>byte[1024] 0a1b2c...</tt>). Other values are rendered with
+     * <tt>toString()</tt> and truncated. Collections, maps and arrays nested
+     * more than 16 deep (for example a collection that contains itself) are
+     * shown as <tt>...</tt>.
+     *
+     * @return bounded renderer
+     */
+    static ValueRenderer bounded() {
+        return ValueRenderers.BOUNDED;
+    }
+}
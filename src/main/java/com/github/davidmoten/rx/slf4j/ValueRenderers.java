@@ -0,0 +1,116 @@
+package com.github.davidmoten.rx.slf4j;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Implementations of {@link ValueRenderer}.
+ */
+final class ValueRenderers {
+
+    static final ValueRenderer BOUNDED = ValueRenderers::bounded;
+
+    private static final String TRUNCATED = "...";
+    // deeper elements are shown as TRUNCATED so that a collection that
+    // contains itself does not overflow the stack
+    private static final int MAX_DEPTH = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ValueRenderers() {
+        // prevent instantiation
+    }
+
+    private static void bounded(StringBuilder b, Object value, int maxLength) {
+        // saturate rather than overflow for very large limits
+        int end = maxLength > Integer.MAX_VALUE - b.length() ? Integer.MAX_VALUE
+                : b.length() + maxLength;
+        if (!append(b, value, end, 0)) {
+            b.setLength(end);
+            b.append(TRUNCATED);
+        }
+    }
+
+    /**
+     * Appends the value, returning false as soon as the length of the builder
+     * exceeds <tt>end</tt> (the caller truncates).
+     */
+    private static boolean append(StringBuilder b, Object value, int end, int depth) {
+        if (depth > MAX_DEPTH && isContainer(value)) {
+            b.append(TRUNCATED);
+        } else if (value instanceof CharSequence) {
+            CharSequence s = (CharSequence) value;
+            // the brackets of an enclosing container may already have
+            // reached the limit
+            int n = Math.max(0, Math.min(s.length(), end - b.length() + 1));
+            b.append(s, 0, n);
+        } else if (value instanceof byte[]) {
+            appendBytes(b, (byte[]) value, end);
+        } else if (value instanceof Map) {
+            b.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    if (isFull(b, end))
+                        return false;
+                    b.append(", ");
+                }
+                first = false;
+                if (!append(b, entry.getKey(), end, depth + 1) || isFull(b, end))
+                    return false;
+                b.append('=');
+                if (!append(b, entry.getValue(), end, depth + 1))
+                    return false;
+            }
+            b.append('}');
+        } else if (value instanceof Collection) {
+            b.append('[');
+            Iterator<?> it = ((Collection<?>) value).iterator();
+            while (it.hasNext()) {
+                if (!append(b, it.next(), end, depth + 1))
+                    return false;
+                if (it.hasNext()) {
+                    if (isFull(b, end))
+                        return false;
+                    b.append(", ");
+                }
+            }
+            b.append(']');
+        } else if (value != null && value.getClass().isArray()) {
+            b.append('[');
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    if (isFull(b, end))
+                        return false;
+                    b.append(", ");
+                }
+                if (!append(b, Array.get(value, i), end, depth + 1))
+                    return false;
+            }
+            b.append(']');
+        } else {
+            CompiledFormat.appendValue(b, value);
+        }
+        return b.length() <= end;
+    }
+
+    // true if nothing more fits, so a separator would pass the limit
+    private static boolean isFull(StringBuilder b, int end) {
+        return b.length() >= end;
+    }
+
+    private static boolean isContainer(Object value) {
+        return value instanceof Map || value instanceof Collection
+                || value != null && value.getClass().isArray();
+    }
+
+    private static void appendBytes(StringBuilder b, byte[] bytes, int end) {
+        b.append("byte[").append(bytes.length).append("] ");
+        // one more byte than fits so that truncation is detected
+        for (int i = 0; i < bytes.length && b.length() <= end; i++) {
+            b.append(HEX[bytes[i] >> 4 & 0xF]).append(HEX[bytes[i] & 0xF]);
+        }
+    }
+}
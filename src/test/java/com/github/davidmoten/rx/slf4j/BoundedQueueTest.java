@@ -0,0 +1,62 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BoundedQueueTest {
+
+    @Test
+    public void testOfferAndPollInOrderUntilFull() {
+        BoundedQueue<Integer> q = new BoundedQueue<Integer>(3);
+        // capacity is rounded up to 4
+        for (int i = 0; i < 4; i++) {
+            assertTrue(q.offer(i));
+        }
+        assertFalse(q.offer(4));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, (int) q.poll());
+        }
+        assertNull(q.poll());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        final BoundedQueue<Integer> q = new BoundedQueue<Integer>(256);
+        final int producers = 4;
+        final int perProducer = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        final CountDownLatch latch = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!q.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        long sum = 0;
+        int count = 0;
+        while (count < producers * perProducer) {
+            Integer v = q.poll();
+            if (v != null) {
+                sum += v;
+                count++;
+            }
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals((long) producers * perProducer * (perProducer - 1) / 2, sum);
+        assertNull(q.poll());
+    }
+}
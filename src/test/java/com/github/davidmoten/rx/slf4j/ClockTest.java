@@ -0,0 +1,36 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import rx.schedulers.TestScheduler;
+
+public class ClockTest {
+
+    @Test
+    public void testSchedulerClock() {
+        TestScheduler scheduler = new TestScheduler();
+        Clock clock = Clock.scheduler(scheduler);
+        scheduler.advanceTimeBy(3, TimeUnit.SECONDS);
+        assertEquals(3000, clock.now());
+    }
+
+    @Test
+    public void testCoarseClockTicks() throws InterruptedException {
+        Clock clock = Clock.coarse();
+        long start = clock.now();
+        Thread.sleep(100);
+        assertTrue(clock.now() > start);
+    }
+
+    @Test
+    public void testMonotonicClockDoesNotGoBackwards() {
+        Clock clock = Clock.monotonic();
+        long t = clock.now();
+        assertTrue(clock.now() >= t);
+    }
+}
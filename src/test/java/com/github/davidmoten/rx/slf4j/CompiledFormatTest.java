@@ -0,0 +1,39 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CompiledFormatTest {
+
+    @Test
+    public void testPrefixAndSuffix() {
+        assertEquals("time=12days", format("time=%sdays", 12));
+    }
+
+    @Test
+    public void testNoArgument() {
+        assertEquals("hello", format("hello", 12));
+    }
+
+    @Test
+    public void testEscapes() {
+        assertEquals("100% of a" + System.lineSeparator(), format("100%% of %s%n", "a"));
+    }
+
+    @Test
+    public void testNull() {
+        assertEquals("v=null", format("v=%s", null));
+    }
+
+    @Test
+    public void testFallsBackToStringFormat() {
+        assertEquals(String.format("%5s|", "ab"), format("%5s|", "ab"));
+    }
+
+    private static String format(String format, Object value) {
+        StringBuilder b = new StringBuilder();
+        CompiledFormat.compile(format).appendTo(b, value);
+        return b.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class CounterTest {
+
+    @Test
+    public void testStripedCounterSumsConcurrentIncrements() throws InterruptedException {
+        final Counter counter = Counter.create();
+        int threads = 4;
+        final int increments = 10000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < increments; j++) {
+                    counter.increment();
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        assertEquals(threads * increments, counter.get());
+    }
+
+    @Test
+    public void testSampleIsExactOnOneThread() {
+        Counter counter = Counter.create();
+        counter.increment();
+        assertEquals(2, counter.incrementAndSample());
+        assertEquals(2, counter.get());
+    }
+}
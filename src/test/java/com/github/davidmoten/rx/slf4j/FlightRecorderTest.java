@@ -0,0 +1,75 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+
+import rx.Subscription;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+public class FlightRecorderTest {
+
+    @Test
+    public void testDumpOnDemandUntilUnsubscribed() {
+        Logger logger = mock(Logger.class);
+        when(logger.isWarnEnabled()).thenReturn(true);
+        TestScheduler scheduler = new TestScheduler();
+        FlightRecorder recorder = FlightRecorder.create(10, Level.WARN);
+        PublishSubject<Integer> subject = PublishSubject.create();
+        Subscription sub = subject.lift(Logging.<Integer> logger(logger)
+                .clock(Clock.scheduler(scheduler)).flightRecorder(recorder).log()).subscribe();
+        subject.onNext(1);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        recorder.dump();
+        ArgumentCaptor<String> line = ArgumentCaptor.forClass(String.class);
+        verify(logger).warn(line.capture());
+        assertTrue(line.getValue(), line.getValue().startsWith(
+                "flight recorder dump, events=1, shown=1\n  -1.0s thread="));
+        assertTrue(line.getValue(), line.getValue().endsWith(" onNext 1"));
+        sub.unsubscribe();
+        recorder.dump();
+        verify(logger).warn(line.capture());
+    }
+
+    @Test
+    public void testDumpedValuesBounded() {
+        Logger logger = mock(Logger.class);
+        when(logger.isWarnEnabled()).thenReturn(true);
+        FlightRecorder recorder = FlightRecorder.create(10, Level.WARN);
+        PublishSubject<String> subject = PublishSubject.create();
+        subject.lift(Logging.<String> logger(logger).onNext(false).maxValueLength(3)
+                .flightRecorder(recorder).log()).subscribe();
+        subject.onNext("abcdef");
+        recorder.dump();
+        ArgumentCaptor<String> line = ArgumentCaptor.forClass(String.class);
+        verify(logger).warn(line.capture());
+        assertTrue(line.getValue(), line.getValue().endsWith(" onNext abc..."));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBePositive() {
+        FlightRecorder.create(0);
+    }
+
+    @Test
+    public void testNothingLoggedWithoutError() {
+        Logger logger = mock(Logger.class);
+        PublishSubject<Integer> subject = PublishSubject.create();
+        subject.lift(Logging.<Integer> logger(logger).flightRecorder(4).log()).subscribe();
+        subject.onNext(1);
+        subject.onCompleted();
+        verify(logger, never()).error(anyString());
+    }
+}
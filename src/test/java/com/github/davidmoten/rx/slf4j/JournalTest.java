@@ -0,0 +1,86 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import rx.Observable;
+
+public class JournalTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testJournalDecodesToText() throws IOException {
+        File dir = folder.newFolder();
+        try (Journal journal = Journal.create(dir, 1 << 20, 2)) {
+            Observable.just(1, 2).lift(Logging.<Integer> logger("boo").onNext(false)
+                    .journal(journal).log()).subscribe();
+            Observable.just("a").concatWith(Observable.<String> error(new RuntimeException("boo")))
+                    .lift(Logging.<String> logger("str").onNext(false).onError(false)
+                            .journal(journal, s -> s.getBytes(StandardCharsets.UTF_8)).log())
+                    .subscribe(x -> {
+                    }, e -> {
+                    });
+        }
+        assertEquals(Arrays.asList("boo onSubscribe", "boo #1, count=1", "boo #2, count=2",
+                "boo onCompleted, count=2", "boo onUnsubscribe", "str onSubscribe",
+                "str a, count=1", "str boo, count=1", "str onUnsubscribe"),
+                decode(new File(dir, "journal-000001.bin")));
+    }
+
+    @Test
+    public void testJournalRollsAndKeepsMaxFiles() throws IOException {
+        File dir = folder.newFolder();
+        try (Journal journal = Journal.create(dir, 1 << 20, 2)) {
+            // 32 bytes per record so four files
+            Observable.range(1, 100000)
+                    .lift(Logging.<Integer> logger("boo").onNext(false).onCompleted((String) null)
+                            .journal(journal).log())
+                    .subscribe();
+        }
+        assertEquals(Arrays.asList("journal-000003.bin", "journal-000004.bin"),
+                sorted(dir.list()));
+        // names are repeated in each file
+        List<String> lines = decode(new File(dir, "journal-000004.bin"));
+        assertEquals("boo onUnsubscribe", lines.get(lines.size() - 1));
+        assertTrue(lines.get(0).startsWith("boo #"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFileSizeTooSmall() throws IOException {
+        Journal.create(folder.getRoot(), 1000, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFileSizeTooLarge() throws IOException {
+        Journal.create(folder.getRoot(), Journal.MAX_FILE_SIZE + 1, 1);
+    }
+
+    private static List<String> sorted(String[] names) {
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    private static List<String> decode(File file) throws IOException {
+        StringBuilder b = new StringBuilder();
+        JournalDecoder.decode(file, b);
+        List<String> lines = new ArrayList<String>();
+        for (String line : b.toString().split("\n")) {
+            // drop the elapsed time
+            lines.add(line.substring(line.indexOf(' ') + 1));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, new LatencyHistogram().percentile(99));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 50; i++) {
+            h.record(i);
+        }
+        assertEquals(25, h.percentile(50));
+        assertEquals(50, h.percentile(100));
+        assertEquals(50, h.max());
+    }
+
+    @Test
+    public void testPercentilesWithinRelativeError() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            h.record(i * 1000L);
+        }
+        assertEquals(50000000, h.percentile(50), 50000000 * 0.03);
+        assertEquals(99000000, h.percentile(99), 99000000 * 0.03);
+        assertEquals(100000000, h.max());
+    }
+
+    @Test
+    public void testHugeValueIsCappedButMaxIsExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, h.max());
+    }
+}
@@ -2,29 +2,54 @@ package com.github.davidmoten.rx.slf4j;
 
 import static com.github.davidmoten.rx.slf4j.Logging.logger;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.ignoreStubs;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.davidmoten.rx.slf4j.Logging.Level;
+import com.github.davidmoten.rx.slf4j.Logging.Overflow;
+import com.github.davidmoten.rx.slf4j.Logging.Parameters.Message;
 
 import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
 import rx.functions.Action1;
 import rx.functions.Func1;
+import rx.plugins.RxJavaHooks;
 import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
 
 public class LoggingTest {
 
     @Test
     public void testName() {
-        Logger logger = mock(Logger.class);
+        Logger logger = enabledLogger();
         int count = Observable.range(1, 3)
         // log all
                 .lift(logger(logger).showValue().log())
@@ -37,7 +62,7 @@ public class LoggingTest {
         verify(logger).info("3");
         verify(logger).info("onCompleted");
         verify(logger).debug("onUnsubscribe");
-        verifyNoMoreInteractions(logger);
+        verifyNoMoreInteractions(ignoreStubs(logger));
     }
 
     @Test
@@ -47,7 +72,7 @@ public class LoggingTest {
 
     @Test
     public void testCountEvery() {
-        Logger logger = mock(Logger.class);
+        Logger logger = enabledLogger();
         // TODO because of mock rx.Server logger name not used
         int count = Observable
                 .range(1, 6)
@@ -64,12 +89,40 @@ public class LoggingTest {
         verify(logger).info("files=6");
         verify(logger).debug("onCompleted, files=6");
         verify(logger).debug("onUnsubscribe");
-        verifyNoMoreInteractions(logger);
+        verifyNoMoreInteractions(ignoreStubs(logger));
+    }
+
+    @Test
+    public void testCountEveryWhenNotFused() {
+        Logger logger = enabledLogger();
+        Observable.range(1, 6)
+                // log using an arbitrary transformation which prevents fusion
+                .lift(Logging.<Integer> logger(logger).excludeValue().showCount("files")
+                        .to(o -> o.map(m -> (Message<Integer>) m)).every(2).log())
+                .subscribe();
+        verify(logger).debug("onSubscribe");
+        verify(logger).info("files=2");
+        verify(logger).info("files=4");
+        verify(logger).info("files=6");
+        verify(logger).info("onCompleted, files=6");
+        verify(logger).debug("onUnsubscribe");
+        verifyNoMoreInteractions(ignoreStubs(logger));
+    }
+
+    @Test
+    public void testFusedStateIsPerSubscription() {
+        Logger logger = enabledLogger();
+        Observable<Integer> o = Observable.range(1, 2)
+                .lift(Logging.<Integer> logger(logger).showValue().showCount().log());
+        o.concatWith(o).subscribe();
+        verify(logger, times(2)).info("1, count=1");
+        verify(logger, times(2)).info("2, count=2");
+        verify(logger, times(2)).info("onCompleted, count=2");
     }
 
     @Test
     public void testLoggingTransformationErrorIsLogged() {
-        Logger logger = mock(Logger.class);
+        Logger logger = enabledLogger();
         final IllegalArgumentException exception = new IllegalArgumentException("problem");
         Observable
                 .just(1)
@@ -85,8 +138,585 @@ public class LoggingTest {
         verify(logger)
                 .error("the logging transformations threw an exception: problem", exception);
         verify(logger).debug("onUnsubscribe");
-        verifyNoMoreInteractions(logger);
+        verifyNoMoreInteractions(ignoreStubs(logger));
+
+    }
+
+    @Test
+    public void testNoLoggingWorkWhenLevelsDisabled() {
+        Logger logger = mock(Logger.class);
+        final AtomicLong calls = new AtomicLong();
+        int count = Observable.range(1, 3)
+                .lift(Logging.<Integer> logger(logger).showValue().showCount()
+                        .value(new Func1<Integer, Integer>() {
+                            @Override
+                            public Integer call(Integer n) {
+                                calls.incrementAndGet();
+                                return n;
+                            }
+                        }).log())
+                .count().toBlocking().single();
+        assertEquals(3, count);
+        assertEquals(0, calls.get());
+        verify(logger, never()).info(anyString());
+    }
+
+    @Test
+    public void testOnlyEnabledLevelsAreLogged() {
+        Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        final AtomicLong calls = new AtomicLong();
+        Observable.range(1, 3)
+                .lift(Logging.<Integer> logger(logger).showValue().showCount()
+                        .onNext(Level.DEBUG).value(new Func1<Integer, Integer>() {
+                            @Override
+                            public Integer call(Integer n) {
+                                calls.incrementAndGet();
+                                return n;
+                            }
+                        }).log())
+                .subscribe();
+        assertEquals(0, calls.get());
+        verify(logger).info("onCompleted, count=3");
+        verify(logger, never()).debug("1, count=1");
+    }
+
+    @Test
+    public void testAsync() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        Observable.range(1, 2)
+                .lift(Logging.<Integer> logger(logger).showValue().async(16, scheduler).log())
+                .subscribe();
+        verify(logger, never()).info("1");
+        scheduler.triggerActions();
+        InOrder inOrder = inOrder(logger);
+        inOrder.verify(logger).debug("onSubscribe");
+        inOrder.verify(logger).info("1");
+        inOrder.verify(logger).info("2");
+        inOrder.verify(logger).info("onCompleted");
+        inOrder.verify(logger).debug("onUnsubscribe");
+        verifyNoMoreInteractions(ignoreStubs(logger));
+    }
+
+    @Test
+    public void testAsyncNotFusedKeepsSubscriptionLinesInOrder() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        Observable.range(1, 1)
+                .lift(Logging.<Integer> logger(logger).showValue()
+                        .to(o -> o.map(m -> (Message<Integer>) m)).async(16, scheduler).log())
+                .subscribe();
+        verify(logger, never()).debug("onSubscribe");
+        scheduler.triggerActions();
+        InOrder inOrder = inOrder(logger);
+        inOrder.verify(logger).debug("onSubscribe");
+        inOrder.verify(logger).info("1");
+        inOrder.verify(logger).info("onCompleted");
+        inOrder.verify(logger).debug("onUnsubscribe");
+        verifyNoMoreInteractions(ignoreStubs(logger));
+    }
+
+    @Test
+    public void testAsyncLogsLateLinesAfterClose() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        AsyncDispatcher dispatcher = new AsyncDispatcher(logger, 16, scheduler, Overflow.BLOCK);
+        dispatcher.dispatch(logger, "a", Level.INFO, null);
+        dispatcher.close();
+        scheduler.triggerActions();
+        verify(logger).info("a");
+        // for example from a timer that is still running
+        dispatcher.dispatch(logger, "late", Level.INFO, null);
+        verify(logger).info("late");
+    }
+
+    @Test
+    public void testAsyncKeepsDrainingAfterAppenderFails() {
+        Logger logger = enabledLogger();
+        RuntimeException failure = new RuntimeException("appender failed");
+        doThrow(failure).doNothing().when(logger).info("a");
+        final List<Throwable> reported = new ArrayList<Throwable>();
+        RxJavaHooks.setOnError(reported::add);
+        try {
+            TestScheduler scheduler = new TestScheduler();
+            AsyncDispatcher dispatcher = new AsyncDispatcher(logger, 16, scheduler,
+                    Overflow.BLOCK);
+            dispatcher.dispatch(logger, "a", Level.INFO, null);
+            dispatcher.dispatch(logger, "b", Level.INFO, null);
+            scheduler.triggerActions();
+            verify(logger).info("b");
+            assertEquals(Arrays.asList(failure), reported);
+            // the dispatcher still drains
+            dispatcher.dispatch(logger, "a", Level.INFO, null);
+            scheduler.triggerActions();
+            verify(logger, times(2)).info("a");
+        } finally {
+            RxJavaHooks.reset();
+        }
+    }
+
+    @Test
+    public void testAsyncDropOldest() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        Observable.range(1, 5).lift(Logging.<Integer> logger(logger).showValue()
+                .async(2, scheduler, Overflow.DROP_OLDEST).log()).subscribe();
+        scheduler.triggerActions();
+        InOrder inOrder = inOrder(logger);
+        inOrder.verify(logger).info("onCompleted");
+        inOrder.verify(logger).debug("onUnsubscribe");
+        inOrder.verify(logger).warn("6 log messages dropped because the buffer was full");
+        verifyNoMoreInteractions(ignoreStubs(logger));
+    }
+
+    @Test
+    public void testAsyncDropNewest() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        Observable.range(1, 5).lift(Logging.<Integer> logger(logger).showValue()
+                .async(2, scheduler, Overflow.DROP_NEWEST).log()).subscribe();
+        scheduler.triggerActions();
+        InOrder inOrder = inOrder(logger);
+        inOrder.verify(logger).debug("onSubscribe");
+        inOrder.verify(logger).info("1");
+        inOrder.verify(logger).warn("6 log messages dropped because the buffer was full");
+        verifyNoMoreInteractions(ignoreStubs(logger));
+    }
+
+    @Test
+    public void testShowRate() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> subject = PublishSubject.create();
+        subject.lift(Logging.<Integer> logger(logger).clock(Clock.scheduler(scheduler))
+                .showRate("rate", 2, TimeUnit.SECONDS).showValue().log()).subscribe();
+        // no time has elapsed so no rate
+        subject.onNext(1);
+        verify(logger).info("1");
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        subject.onNext(2);
+        verify(logger).info("2, rate=4.000");
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        subject.onNext(3);
+        verify(logger).info("3, rate=4.000");
+        // only the two most recent items are in the window
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        subject.onNext(4);
+        verify(logger).info("4, rate=2.000");
+    }
+
+    @Test
+    public void testCounterSharedBetweenOperators() {
+        Logger logger = enabledLogger();
+        Counter counter = Counter.create();
+        Observable.range(1, 3)
+                .lift(Logging.<Integer> logger(logger).excludeValue().showCount(counter).log())
+                .concatWith(Observable.range(1, 3).lift(
+                        Logging.<Integer> logger(logger).excludeValue().showCount(counter).log()))
+                .subscribe();
+        assertEquals(6, counter.get());
+        verify(logger).info("count=1");
+        verify(logger).info("count=6");
+    }
+
+    @Test
+    public void testEveryDurationWithSchedulerClock() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> subject = PublishSubject.create();
+        subject.lift(Logging.<Integer> logger(logger).showValue().every(1, TimeUnit.SECONDS)
+                .clock(Clock.scheduler(scheduler)).onCompleted((String) null).log()).subscribe();
+        subject.onNext(1);
+        subject.onNext(2);
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        subject.onNext(3);
+        scheduler.advanceTimeBy(600, TimeUnit.MILLISECONDS);
+        subject.onNext(4);
+        subject.onNext(5);
+        subject.onCompleted();
+        verify(logger).info("1");
+        verify(logger).info("4");
+        verify(logger, times(2)).info(anyString());
+    }
+
+    @Test
+    public void testLimitSharedBetweenOperators() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        RateLimiter limiter = RateLimiter.create(2, 1, TimeUnit.SECONDS,
+                Clock.scheduler(scheduler));
+        PublishSubject<Integer> subject = PublishSubject.create();
+        // the operator clocks differ but the budget is timed by the limiter
+        subject.lift(Logging.<Integer> logger(logger).showValue().limit(limiter)
+                .onCompleted((String) null).log()).subscribe();
+        subject.lift(Logging.<Integer> logger(logger).showValue().limit(limiter)
+                .clock(Clock.coarse()).onCompleted((String) null).log()).subscribe();
+        subject.onNext(1);
+        subject.onNext(2);
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        subject.onNext(3);
+        subject.onCompleted();
+        verify(logger, times(2)).info("1");
+        verify(logger).info("3, suppressed=2");
+        verify(logger, times(3)).info(anyString());
+    }
+
+    @Test
+    public void testLimitAppliedAfterOtherSteps() {
+        checkLimitAppliedAfterOtherSteps(false);
+        checkLimitAppliedAfterOtherSteps(true);
+    }
+
+    private static void checkLimitAppliedAfterOtherSteps(boolean fused) {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        // limit is called first but only the lines every() lets through
+        // use the budget
+        Logging.Parameters.Builder<Integer> builder = Logging.<Integer> logger(logger)
+                .subscribed((String) null).unsubscribed((String) null)
+                .onCompleted((String) null)
+                .limit(RateLimiter.create(2, 1, TimeUnit.SECONDS, Clock.scheduler(scheduler)))
+                .showValue().every(2);
+        if (!fused)
+            builder = builder.to(o -> o.map(m -> (Message<Integer>) m));
+        Observable.range(1, 6).lift(builder.log()).subscribe();
+        verify(logger).info("2");
+        verify(logger).info("4");
+        verify(logger, times(2)).info(anyString());
+    }
+
+    @Test
+    public void testSampleProbabilityZeroAndOne() {
+        Logger logger = enabledLogger();
+        Observable.range(1, 10).lift(Logging.<Integer> logger(logger).showValue().sample(0)
+                .onCompleted((String) null).log()).subscribe();
+        Observable.range(1, 3).lift(Logging.<Integer> logger(logger).showValue().sample(1)
+                .onCompleted((String) null).log()).subscribe();
+        verify(logger, times(3)).info(anyString());
+    }
+
+    @Test
+    public void testSampleByKeyIsConsistent() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .info(anyString());
+        Observable.range(1, 100).map(i -> i % 10)
+                .lift(Logging.<Integer> logger(logger).showValue()
+                        .sampleByKey(x -> x, 0.5)
+                        .onCompleted((String) null).log())
+                .subscribe();
+        Set<String> keys = new HashSet<String>(logged);
+        assertTrue(keys.size() > 0 && keys.size() < 10);
+        assertEquals(keys.size() * 10, logged.size());
+    }
+
+    @Test
+    public void testSampleReservoir() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> subject = PublishSubject.create();
+        subject.lift(Logging.<Integer> logger(logger).excludeValue()
+                .clock(Clock.scheduler(scheduler)).sampleReservoir(5, 1, TimeUnit.SECONDS)
+                .log()).subscribe();
+        subject.onNext(1);
+        subject.onNext(2);
+        subject.onNext(3);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        subject.onNext(4);
+        subject.onCompleted();
+        InOrder inOrder = inOrder(logger);
+        inOrder.verify(logger).debug("onSubscribe");
+        inOrder.verify(logger).info("sample=[1, 2, 3]");
+        inOrder.verify(logger).info("onCompleted, sample=[4]");
+        inOrder.verify(logger).debug("onUnsubscribe");
+        verifyNoMoreInteractions(ignoreStubs(logger));
+    }
+
+    @Test
+    public void testShowLatency() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .info(anyString());
+        Observable.range(1, 3)
+                .lift(Logging.<Integer> logger(logger).excludeValue().showLatency().log())
+                .subscribe();
+        assertEquals(4, logged.size());
+        // nothing has been processed downstream when the first item is logged
+        assertEquals("", logged.get(0));
+        assertTrue(logged.get(3), logged.get(3).matches(
+                "onCompleted, latency=\\[p50=\\S+, p99=\\S+, p99.9=\\S+, max=\\S+\\]"));
+    }
+
+    @Test
+    public void testShowGaps() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .info(anyString());
+        Observable.range(1, 3).lift(Logging.<Integer> logger(logger).showValue().showGaps().log())
+                .subscribe();
+        assertEquals("1", logged.get(0));
+        assertTrue(logged.get(3), logged.get(3).matches(
+                "onCompleted, gaps=\\[min=\\S+, mean=\\S+, p99=\\S+, max=\\S+, "
+                        + "burstiness=-?\\d\\.\\d\\d\\]"));
+    }
+
+    @Test
+    public void testShowGapsBetweenAllItemsNotJustLoggedOnes() {
+        checkGapsBetweenAllItems(false);
+        checkGapsBetweenAllItems(true);
+    }
+
+    private static void checkGapsBetweenAllItems(boolean fused) {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .info(anyString());
+        Logging.Parameters.Builder<Integer> builder = Logging.<Integer> logger(logger)
+                .subscribed((String) null).unsubscribed((String) null)
+                .onCompleted((String) null).showValue().when(n -> n == 3).showGaps();
+        if (!fused)
+            builder = builder.to(o -> o.map(m -> (Message<Integer>) m));
+        Observable.range(1, 3).lift(builder.log()).subscribe();
+        assertEquals(1, logged.size());
+        // two gaps were measured although only the third item is logged
+        assertTrue(logged.get(0), logged.get(0).matches("3, gaps=\\[min=\\S+, mean=\\S+, "
+                + "p99=\\S+, max=\\S+, burstiness=-?\\d\\.\\d\\d\\]"));
+    }
+
+    @Test
+    public void testShowLifecycle() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .info(anyString());
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .debug(anyString());
+        Observable<Integer> o = Observable.range(1, 2)
+                .lift(Logging.<Integer> logger(logger).excludeValue().showLifecycle().log());
+        o.subscribe();
+        o.subscribe();
+        assertEquals(10, logged.size());
+        assertTrue(logged.get(3),
+                logged.get(3).matches("onCompleted, firstItem=\\S+, active=\\S+"));
+        assertTrue(logged.get(9),
+                logged.get(9).matches("onUnsubscribe, firstItem=\\S+, active=\\S+, "
+                        + "teardown=\\S+, all=\\[subscriptions=2, firstItemP99=\\S+, "
+                        + "activeP99=\\S+, teardownP99=\\S+\\]"));
+    }
+
+    @Test
+    public void testSummaryOfFirstItemOnlyIsNotIdle() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .info(anyString());
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> subject = PublishSubject.create();
+        subject.lift(Logging.<Integer> logger(logger).onNext(false)
+                .summaryEvery(1, TimeUnit.SECONDS, scheduler).log()).subscribe();
+        subject.onNext(1);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertEquals(1, logged.size());
+        assertTrue(logged.get(0), logged.get(0).matches("summary, count=1, delta=1, rate=\\S+"));
+    }
+
+    @Test
+    public void testSummaryEvery() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .info(anyString());
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> subject = PublishSubject.create();
+        Subscription sub = subject.lift(Logging.<Integer> logger(logger).onNext(false)
+                .summaryEvery(1, TimeUnit.SECONDS, scheduler).log()).subscribe();
+        subject.onNext(1);
+        subject.onNext(2);
+        subject.onNext(3);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        sub.unsubscribe();
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertEquals(2, logged.size());
+        assertTrue(logged.get(0), logged.get(0)
+                .matches("summary, count=3, delta=3, rate=\\S+, minGap=\\S+, maxGap=\\S+"));
+        assertEquals("summary, count=3, delta=0, rate=0.000, idle", logged.get(1));
+    }
+
+    @Test
+    public void testWarnIfIdle() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .warn(anyString());
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .info(anyString());
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> subject = PublishSubject.create();
+        Subscription sub = subject.lift(Logging.<Integer> logger(logger).onNext(false)
+                .onCompleted((String) null).warnIfIdle(1, TimeUnit.SECONDS, scheduler).log())
+                .subscribe();
+        subject.onNext(1);
+        scheduler.advanceTimeBy(900, TimeUnit.MILLISECONDS);
+        assertTrue(logged.isEmpty());
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        // warned once only
+        assertEquals(Arrays.asList("no items for 1.0s, count=1, last=1"), logged);
+        subject.onNext(2);
+        assertEquals("items resumed, count=2", logged.get(1));
+        sub.unsubscribe();
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+        assertEquals(2, logged.size());
+    }
+
+    @Test
+    public void testWarnIfIdleBoundsLastValueAndReleasesWorker() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .warn(anyString());
+        TestScheduler scheduler = new TestScheduler();
+        RecordingScheduler recording = new RecordingScheduler(scheduler);
+        PublishSubject<String> subject = PublishSubject.create();
+        Subscription sub = subject.lift(Logging.<String> logger(logger).onNext(false)
+                .maxValueLength(4).warnIfIdle(1, TimeUnit.SECONDS, recording).log())
+                .subscribe();
+        subject.onNext("abcdefgh");
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("no items for 1.0s, count=1, last=abcd..."), logged);
+        assertEquals(1, recording.workers.size());
+        assertFalse(recording.workers.get(0).isUnsubscribed());
+        sub.unsubscribe();
+        // the timer task only runs while streams are watched
+        assertTrue(recording.workers.get(0).isUnsubscribed());
+    }
+
+    @Test
+    public void testFlightRecorderDumpsLastItemsOnError() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .error(anyString());
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> subject = PublishSubject.create();
+        subject.lift(Logging.<Integer> logger(logger).onNext(false).onError(false)
+                .clock(Clock.scheduler(scheduler)).flightRecorder(2).log())
+                .subscribe(new TestSubscriber<Integer>());
+        subject.onNext(1);
+        subject.onNext(2);
+        subject.onNext(3);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        subject.onError(new RuntimeException("boo"));
+        long thread = Thread.currentThread().getId();
+        assertEquals(Arrays.asList("flight recorder onError, events=4, shown=2\n  -1.0s thread="
+                + thread + " onNext 3\n  -0ns thread=" + thread
+                + " onError java.lang.RuntimeException: boo"), logged);
+    }
+
+    @Test
+    public void testMaxValueLength() {
+        Logger logger = enabledLogger();
+        Observable.just(Arrays.asList("abc", "def", "ghi"), Arrays.asList("a"))
+                .lift(Logging.<List<String>> logger(logger).onNextPrefix("value=")
+                        .maxValueLength(8).log())
+                .subscribe();
+        verify(logger).info("value=[abc, de...");
+        verify(logger).info("value=[a]");
+    }
+
+    @Test
+    public void testDedupeRetriedErrors() {
+        final List<String> logged = new ArrayList<String>();
+        Logger logger = enabledLogger();
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .error(anyString(), any(Throwable.class));
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .error(anyString());
+        TestScheduler scheduler = new TestScheduler();
+        RuntimeException e = new RuntimeException("boo");
+        Observable.<Integer> error(e)
+                .lift(Logging.<Integer> logger(logger).subscribed((String) null)
+                        .unsubscribed((String) null).onErrorPrefix("error=")
+                        .dedupe(5, TimeUnit.SECONDS, scheduler).log())
+                .retry(3).subscribe(new TestSubscriber<Integer>());
+        verify(logger).error("error=boo", e);
+        assertEquals(1, logged.size());
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+        verify(logger).error("error=boo, repeated=3, window=5.0s");
+        assertEquals(2, logged.size());
+    }
+
+    @Test
+    public void testDedupeClosesWindowsWithOneSweeper() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        RecordingScheduler counting = new RecordingScheduler(scheduler);
+        PublishSubject<Integer> subject = PublishSubject.create();
+        subject.lift(Logging.<Integer> logger(logger).showValue().subscribed((String) null)
+                .dedupe(5, TimeUnit.SECONDS, counting).log()).subscribe();
+        for (int i = 1; i <= 100; i++) {
+            subject.onNext(i);
+        }
+        subject.onNext(1);
+        scheduler.advanceTimeBy(3, TimeUnit.SECONDS);
+        subject.onNext(1);
+        subject.onNext(101);
+        subject.onNext(101);
+        subject.onNext(101);
+        assertEquals(1, counting.workers.size());
+        verify(logger, times(1)).info("1");
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        verify(logger).info("1, repeated=2, window=5.0s");
+        verify(logger, never()).info("2, repeated=0, window=5.0s");
+        verify(logger, never()).info("101, repeated=2, window=5.0s");
+        scheduler.advanceTimeBy(3, TimeUnit.SECONDS);
+        verify(logger).info("101, repeated=2, window=5.0s");
+        // the sweeper stops when no windows are open
+        subject.onNext(1);
+        verify(logger, times(2)).info("1");
+        assertEquals(2, counting.workers.size());
+    }
 
+    @Test
+    public void testDedupeClosesOldestWindowWhenFull() {
+        Logger logger = enabledLogger();
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> subject = PublishSubject.create();
+        subject.lift(Logging.<Integer> logger(logger).showValue().subscribed((String) null)
+                .dedupe(5, TimeUnit.SECONDS, scheduler).log()).subscribe();
+        subject.onNext(1);
+        subject.onNext(1);
+        for (int i = 2; i <= 1100; i++) {
+            subject.onNext(i);
+        }
+        // the window of 1 was closed early to make room
+        verify(logger).info("1, repeated=1, window=5.0s");
+        subject.onNext(1);
+        verify(logger, times(2)).info("1");
+        subject.onNext(1100);
+        verify(logger, times(1)).info("1100");
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+        verify(logger).info("1100, repeated=1, window=5.0s");
+        verify(logger, never()).info("1, repeated=0, window=5.0s");
+    }
+
+    @Test
+    public void testShowRequests() {
+        Logger logger = enabledLogger();
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>(0);
+        Observable.range(1, 5)
+                .lift(Logging.<Integer> logger(logger).excludeValue().showRequests().log())
+                .subscribe(ts);
+        ts.requestMore(2);
+        verify(logger).info("requested=2, delivered=1, outstanding=1");
+        verify(logger).info("requested=2, delivered=2, outstanding=0");
+        ts.requestMore(Long.MAX_VALUE);
+        verify(logger).info("requested=unbounded, delivered=5");
+        verify(logger).info("onCompleted, requested=unbounded, delivered=5");
     }
 
     @Test
@@ -132,6 +762,12 @@ public class LoggingTest {
         assertEquals(10, new CallingClass().count());
     }
 
+    @Test
+    public void testLoggerNameIsCallingClass() {
+        assertEquals(LoggingTest.class.getName(), logger().getLogger().getName());
+        assertEquals(CallingClass.class.getName(), new CallingClass().loggerName());
+    }
+
     private static class CallingClass {
         public int count() {
             return Observable.range(1, 10)
@@ -140,6 +776,10 @@ public class LoggingTest {
                     // count
                     .count().toBlocking().single();
         }
+
+        public String loggerName() {
+            return logger().getLogger().getName();
+        }
     }
 
     @Test
@@ -158,6 +798,16 @@ public class LoggingTest {
 
     private static final Logger log = LoggerFactory.getLogger(LoggingTest.class);
 
+    private static Logger enabledLogger() {
+        Logger logger = mock(Logger.class);
+        when(logger.isTraceEnabled()).thenReturn(true);
+        when(logger.isDebugEnabled()).thenReturn(true);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        when(logger.isWarnEnabled()).thenReturn(true);
+        when(logger.isErrorEnabled()).thenReturn(true);
+        return logger;
+    }
+
     @Test
     public void testExample2() {
         Observable.range(1, 100).map(new Func1<Integer, Integer>() {
@@ -255,4 +905,26 @@ public class LoggingTest {
                 // block and get the answer
                 .toBlocking().last();
     }
+
+    private static final class RecordingScheduler extends Scheduler {
+
+        private final Scheduler scheduler;
+        final List<Worker> workers = new ArrayList<Worker>();
+
+        RecordingScheduler(Scheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public Worker createWorker() {
+            Worker w = scheduler.createWorker();
+            workers.add(w);
+            return w;
+        }
+
+        @Override
+        public long now() {
+            return scheduler.now();
+        }
+    }
 }
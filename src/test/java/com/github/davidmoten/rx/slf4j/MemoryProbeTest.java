@@ -0,0 +1,26 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MemoryProbeTest {
+
+    @Test
+    public void testTextIsCachedWithinRefreshInterval() {
+        MemoryProbe probe = MemoryProbe.create(1, TimeUnit.HOURS, false);
+        String text = probe.text();
+        assertTrue(text, text.matches("usedMem=\\d+MB, percentMax=\\d+\\.\\d, max=\\d+MB"));
+        assertSame(text, probe.text());
+    }
+
+    @Test
+    public void testDetails() {
+        String text = MemoryProbe.create(0, TimeUnit.MILLISECONDS, true).text();
+        assertTrue(text, text.startsWith("heapUsed="));
+        assertTrue(text, text.contains(", gcCount="));
+    }
+}
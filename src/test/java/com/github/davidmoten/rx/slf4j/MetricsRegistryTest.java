@@ -0,0 +1,98 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import rx.Observable;
+import rx.schedulers.TestScheduler;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testMetricsRecordedWhenLoggingDisabled() throws JMException {
+        // levels are disabled on a mock logger
+        Logger logger = mock(Logger.class);
+        Observable.range(1, 5).lift(Logging.<Integer> logger(logger).showLatency()
+                .register("test.disabled").log()).subscribe();
+        OperatorMetricsMXBean metrics = MetricsRegistry.get("test.disabled");
+        assertEquals(5, metrics.getItems());
+        assertEquals(1, metrics.getCompletions());
+        assertEquals(0, metrics.getErrors());
+        assertEquals(0, metrics.getActiveSubscriptions());
+        assertTrue(metrics.getLatencyMaxNanos() > 0);
+        assertTrue(MetricsRegistry.names().contains("test.disabled"));
+        assertEquals(5L, ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(MetricsRegistry.objectName("test.disabled"), "Items"));
+    }
+
+    @Test
+    public void testOperatorsWithSameNameShareMetrics() {
+        Logger logger = mock(Logger.class);
+        Observable.range(1, 2).lift(Logging.<Integer> logger(logger).register("test.shared").log())
+                .subscribe();
+        Observable.<Integer> error(new RuntimeException("boo"))
+                .lift(Logging.<Integer> logger(logger).register("test.shared").log())
+                .subscribe(x -> {
+                }, e -> {
+                });
+        OperatorMetricsMXBean metrics = MetricsRegistry.get("test.shared");
+        assertEquals(2, metrics.getItems());
+        assertEquals(1, metrics.getErrors());
+    }
+
+    @Test
+    public void testUnregister() throws JMException {
+        Logger logger = mock(Logger.class);
+        Observable.range(1, 3).lift(Logging.<Integer> logger(logger)
+                .register("test.unregister").log()).subscribe();
+        assertEquals(3, MetricsRegistry.get("test.unregister").getItems());
+        assertTrue(MetricsRegistry.unregister("test.unregister"));
+        assertNull(MetricsRegistry.get("test.unregister"));
+        assertFalse(MetricsRegistry.names().contains("test.unregister"));
+        assertFalse(ManagementFactory.getPlatformMBeanServer()
+                .isRegistered(MetricsRegistry.objectName("test.unregister")));
+        assertFalse(MetricsRegistry.unregister("test.unregister"));
+        // registering again starts from scratch
+        Observable.range(1, 2).lift(Logging.<Integer> logger(logger)
+                .register("test.unregister").log()).subscribe();
+        assertEquals(2, MetricsRegistry.get("test.unregister").getItems());
+        assertTrue(MetricsRegistry.unregister("test.unregister"));
+    }
+
+    @Test
+    public void testReadingRateDoesNotResetIt() {
+        TestScheduler scheduler = new TestScheduler();
+        Logger logger = mock(Logger.class);
+        Observable.range(1, 20).lift(Logging.<Integer> logger(logger)
+                .clock(Clock.scheduler(scheduler)).register("test.rate").log()).subscribe();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        OperatorMetricsMXBean metrics = MetricsRegistry.get("test.rate");
+        assertEquals(10.0, metrics.getRatePerSecond(), 0.0001);
+        assertEquals(10.0, metrics.getRatePerSecond(), 0.0001);
+    }
+
+    @Test
+    public void testRateFallsToZeroWhenItemsStop() {
+        TestScheduler scheduler = new TestScheduler();
+        Logger logger = mock(Logger.class);
+        Observable.range(1, 20).lift(Logging.<Integer> logger(logger)
+                .clock(Clock.scheduler(scheduler)).register("test.rate.stopped").log())
+                .subscribe();
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        OperatorMetricsMXBean metrics = MetricsRegistry.get("test.rate.stopped");
+        assertEquals(10.0, metrics.getRatePerSecond(), 0.0001);
+        scheduler.advanceTimeBy(OperatorMetrics.RATE_WINDOW_MS, TimeUnit.MILLISECONDS);
+        assertEquals(0.0, metrics.getRatePerSecond(), 0.0001);
+    }
+}
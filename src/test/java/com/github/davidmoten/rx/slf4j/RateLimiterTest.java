@@ -0,0 +1,42 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testBurstThenSteadyRate() {
+        AtomicLong now = new AtomicLong(1000);
+        RateLimiter limiter = RateLimiter.create(10, 1, TimeUnit.SECONDS, now::get);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        now.set(1099);
+        assertFalse(limiter.tryAcquire());
+        // one token every 100ms
+        now.set(1100);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(3, limiter.drainSuppressed());
+        assertEquals(0, limiter.drainSuppressed());
+    }
+
+    @Test
+    public void testRefillsToBurstOnly() {
+        AtomicLong now = new AtomicLong(0);
+        RateLimiter limiter = RateLimiter.create(2, 1, TimeUnit.SECONDS, now::get);
+        assertTrue(limiter.tryAcquire());
+        now.set(10000);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+}
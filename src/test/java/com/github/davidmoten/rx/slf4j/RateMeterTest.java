@@ -0,0 +1,48 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RateMeterTest {
+
+    @Test
+    public void testNoEventsIsNaN() {
+        assertTrue(Double.isNaN(new RateMeter(3).rate(1000, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void testRateBeforeWindowIsFull() {
+        RateMeter meter = new RateMeter(10);
+        meter.mark(1000);
+        meter.mark(1100);
+        assertEquals(2 / 0.5, meter.rate(1500, TimeUnit.SECONDS), 0.00001);
+    }
+
+    @Test
+    public void testRateOverSlidingWindow() {
+        RateMeter meter = new RateMeter(2);
+        meter.mark(0);
+        meter.mark(1000);
+        meter.mark(2000);
+        meter.mark(3000);
+        // oldest timestamp in window is 2000
+        assertEquals(1.0, meter.rate(4000, TimeUnit.SECONDS), 0.00001);
+    }
+
+    @Test
+    public void testDecimals() {
+        assertEquals("12.346", decimals(12.3456));
+        assertEquals("0.005", decimals(0.005));
+        assertEquals("-3.000", decimals(-3));
+    }
+
+    private static String decimals(double value) {
+        StringBuilder b = new StringBuilder();
+        Decimals.append(b, value, 3);
+        return b.toString();
+    }
+}
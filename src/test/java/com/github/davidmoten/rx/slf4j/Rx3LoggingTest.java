@@ -0,0 +1,208 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+
+import com.github.davidmoten.rx.slf4j.Logging.Level;
+import com.github.davidmoten.rx.slf4j.Logging.Parameters.Message;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableSubscriber;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.functions.Function;
+import io.reactivex.rxjava3.operators.QueueFuseable;
+import io.reactivex.rxjava3.operators.QueueSubscription;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+import io.reactivex.rxjava3.processors.UnicastProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.schedulers.TestScheduler;
+
+public class Rx3LoggingTest {
+
+    @Test
+    public void testFlowable() {
+        List<String> logged = new ArrayList<String>();
+        Flowable.range(1, 3)
+                .compose(Logging.<Integer> logger(capturingLogger(logged)).showValue()
+                        .showCount().rx3())
+                .test().assertValues(1, 2, 3).assertComplete();
+        assertEquals(Arrays.asList("1, count=1", "2, count=2", "3, count=3",
+                "onCompleted, count=3"), logged);
+    }
+
+    @Test
+    public void testObservable() {
+        List<String> logged = new ArrayList<String>();
+        Observable.just(1, 2)
+                .compose(Logging.<Integer> logger(capturingLogger(logged)).showValue()
+                        .showRequests().rx3())
+                .test().assertValues(1, 2).assertComplete();
+        assertEquals("1, requested=unbounded, delivered=1", logged.get(0));
+    }
+
+    @Test
+    public void testSyncFusionPassedThrough() {
+        final List<String> logged = new ArrayList<String>();
+        final List<Integer> values = new ArrayList<Integer>();
+        final int[] mode = new int[1];
+        Flowable.range(1, 2)
+                .compose(Logging.<Integer> logger(capturingLogger(logged)).showValue().rx3())
+                .subscribe(new FlowableSubscriber<Integer>() {
+
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public void onSubscribe(Subscription s) {
+                        QueueSubscription<Integer> qs = (QueueSubscription<Integer>) s;
+                        mode[0] = qs.requestFusion(QueueFuseable.ANY);
+                        try {
+                            Integer v;
+                            while ((v = qs.poll()) != null) {
+                                values.add(v);
+                            }
+                        } catch (Throwable e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+
+                    @Override
+                    public void onNext(Integer t) {
+                        values.add(-1);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        values.add(-2);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        values.add(-3);
+                    }
+                });
+        assertEquals(QueueFuseable.SYNC, mode[0]);
+        assertEquals(Arrays.asList(1, 2), values);
+        assertEquals(Arrays.asList("1", "2", "onCompleted"), logged);
+    }
+
+    @Test
+    public void testAsyncFusionLogsTerminalEventAfterQueueDrained() {
+        final List<String> logged = new ArrayList<String>();
+        final List<Integer> values = new ArrayList<Integer>();
+        final int[] mode = new int[1];
+        UnicastProcessor<Integer> processor = UnicastProcessor.create();
+        processor.onNext(1);
+        processor.onNext(2);
+        processor.onNext(3);
+        processor.onComplete();
+        processor.compose(Logging.<Integer> logger(capturingLogger(logged)).showValue()
+                .showCount().subscribed(Level.INFO).unsubscribed(Level.INFO).rx3())
+                .subscribe(new FlowableSubscriber<Integer>() {
+
+                    QueueSubscription<Integer> qs;
+
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public void onSubscribe(Subscription s) {
+                        qs = (QueueSubscription<Integer>) s;
+                        mode[0] = qs.requestFusion(QueueFuseable.ANY);
+                    }
+
+                    @Override
+                    public void onNext(Integer t) {
+                        // only drain when upstream completes
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        values.add(-2);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        drain();
+                        values.add(-3);
+                    }
+
+                    private void drain() {
+                        try {
+                            Integer v;
+                            while ((v = qs.poll()) != null) {
+                                values.add(v);
+                            }
+                        } catch (Throwable e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+        assertEquals(QueueFuseable.ASYNC, mode[0]);
+        assertEquals(Arrays.asList(1, 2, 3, -3), values);
+        assertEquals(Arrays.asList("onSubscribe", "1, count=1", "2, count=2", "3, count=3",
+                "onCompleted, count=3", "onUnsubscribe"), logged);
+    }
+
+    @Test
+    public void testBoundaryFusionRefused() {
+        List<String> logged = new ArrayList<String>();
+        Flowable.range(1, 3)
+                .compose(Logging.<Integer> logger(capturingLogger(logged)).showValue().rx3())
+                .observeOn(Schedulers.single()).test()
+                .awaitDone(10, TimeUnit.SECONDS).assertValues(1, 2, 3);
+        assertEquals(Arrays.asList("1", "2", "3", "onCompleted"), logged);
+    }
+
+    @Test
+    public void testRx3Schedulers() {
+        List<String> logged = new ArrayList<String>();
+        TestScheduler scheduler = new TestScheduler();
+        PublishProcessor<Integer> processor = PublishProcessor.create();
+        processor.compose(Logging.<Integer> logger(capturingLogger(logged)).showValue()
+                .summaryEvery(1, TimeUnit.SECONDS, scheduler)
+                .dedupe(5, TimeUnit.SECONDS, scheduler).rx3()).test();
+        processor.onNext(1);
+        processor.onNext(1);
+        processor.onNext(1);
+        assertEquals(Arrays.asList("1"), logged);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertEquals(2, logged.size());
+        assertTrue(logged.get(1), logged.get(1).startsWith("summary, count=3, delta=3"));
+        scheduler.advanceTimeBy(4, TimeUnit.SECONDS);
+        assertTrue(logged.toString(), logged.contains("1, repeated=2, window=5.0s"));
+    }
+
+    @Test
+    public void testRx3Function() {
+        List<String> logged = new ArrayList<String>();
+        Function<Integer, String> function = x -> "v" + x;
+        Flowable.range(1, 2)
+                .compose(Logging.<Integer> logger(capturingLogger(logged)).showValue()
+                        .value(Rx3Logging.func1(function)).rx3())
+                .test().assertValues(1, 2);
+        assertEquals(Arrays.asList("v1", "v2", "onCompleted"), logged);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNonFusableBuilderNotSupported() {
+        Logging.<Integer> logger("test").to(o -> o.map(m -> (Message<Integer>) m)).rx3();
+    }
+
+    private static Logger capturingLogger(final List<String> logged) {
+        Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(logger)
+                .info(anyString());
+        return logger;
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import rx.Observable;
+
+/**
+ * Run by the default test execution against the SLF4J 1.7 API and by the
+ * <tt>slf4j2</tt> execution against the SLF4J 2 API. The fluent API is called
+ * reflectively because the tests compile against SLF4J 1.7.
+ */
+public class StructuredLoggingTest {
+
+    @Test
+    public void testStructuredFallsBackToTextWithSlf4j17() {
+        assumeFalse(KeyValues.isSupported());
+        Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        Observable.just("a").lift(Logging.<String> logger(logger).showValue().showCount("n")
+                .structured().onCompleted((String) null).log()).subscribe();
+        verify(logger).info("a, n=1");
+    }
+
+    @Test
+    public void testStructuredWithSlf4j2() throws Exception {
+        assumeTrue(KeyValues.isSupported());
+        Class<?> builderClass = Class.forName("org.slf4j.spi.LoggingEventBuilder");
+        Object event = mock(builderClass, RETURNS_SELF);
+        Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        Method atLevel = Logger.class.getMethod("atLevel", org.slf4j.event.Level.class);
+        when(atLevel.invoke(logger, org.slf4j.event.Level.INFO)).thenReturn(event);
+        Observable.just("a").lift(Logging.<String> logger(logger).showValue().showCount("n")
+                .structured().onCompleted((String) null).log()).subscribe();
+        Method addKeyValue = builderClass.getMethod("addKeyValue", String.class, Object.class);
+        addKeyValue.invoke(verify(event), "n", 1L);
+        addKeyValue.invoke(verify(event), "value", "a");
+        builderClass.getMethod("log", String.class).invoke(verify(event), "");
+        verify(logger, never()).info(anyString());
+    }
+}
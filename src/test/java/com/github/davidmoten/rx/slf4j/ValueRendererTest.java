@@ -0,0 +1,95 @@
+package com.github.davidmoten.rx.slf4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ValueRendererTest {
+
+    @Test
+    public void testShortValuesRenderedInFull() {
+        assertEquals("abc", render("abc", 3));
+        assertEquals("[1, 2]", render(Arrays.asList(1, 2), 10));
+        assertEquals("[1, 2]", render(new int[] { 1, 2 }, 10));
+        assertEquals("null", render(null, 10));
+        assertEquals("12345", render(12345, 5));
+    }
+
+    @Test
+    public void testCharSequenceTruncated() {
+        assertEquals("abc...", render("abcdef", 3));
+    }
+
+    @Test
+    public void testCollectionStopsAtLimit() {
+        // only the elements up to the limit are rendered
+        assertEquals("[0, 1, 2...", render(Arrays.asList(range(1000000)), 8));
+    }
+
+    @Test
+    public void testNestedArrays() {
+        assertEquals("[[a, b], [cd...", render(new String[][] { { "a", "b" }, { "cde" } }, 12));
+    }
+
+    @Test
+    public void testMap() {
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        map.put("a", 1);
+        map.put("b", 2);
+        assertEquals("{a=1, b=2}", render(map, 100));
+        assertEquals("{a=1, ...", render(map, 6));
+    }
+
+    @Test
+    public void testLimitReachedAtSeparator() {
+        assertEquals("[ab...", render(Arrays.asList("ab", "cd"), 3));
+        assertEquals("[[ab]...", render(Arrays.asList(Arrays.asList("ab"), "cd"), 5));
+        assertEquals("[ab...", render(new String[] { "ab", "cd" }, 3));
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        map.put("ab", "cd");
+        map.put("ef", "gh");
+        assertEquals("{ab...", render(map, 3));
+        assertEquals("{ab=cd...", render(map, 6));
+    }
+
+    @Test
+    public void testSelfContainingCollectionBoundedByDepth() {
+        List<Object> list = new ArrayList<Object>();
+        list.add(list);
+        String s = render(list, Integer.MAX_VALUE);
+        assertTrue(s, s.startsWith("[[[["));
+        assertTrue(s, s.contains("..."));
+    }
+
+    @Test
+    public void testBytesAsHexHead() {
+        assertEquals("byte[4] 0aff...", render(new byte[] { 10, -1, 0, 1 }, 12));
+        assertEquals("byte[4] 0aff0001", render(new byte[] { 10, -1, 0, 1 }, 100));
+    }
+
+    @Test
+    public void testOtherValuesTruncated() {
+        assertEquals("2.5...", render(2.5e10, 3));
+    }
+
+    private static String render(Object value, int maxLength) {
+        StringBuilder b = new StringBuilder("x=");
+        ValueRenderer.bounded().appendTo(b, value, maxLength);
+        return b.substring(2);
+    }
+
+    private static Integer[] range(int n) {
+        Integer[] a = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = i;
+        }
+        return a;
+    }
+}